@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.index.ArchiveData;
+
+/**
+ * An archive which differs between the local store and the server's
+ * reference table, and so must be downloaded
+ */
+public class ArchiveUpdate
+{
+	private final int index;
+	private final ArchiveData archiveData;
+	private final Archive existing;
+
+	public ArchiveUpdate(int index, ArchiveData archiveData, Archive existing)
+	{
+		this.index = index;
+		this.archiveData = archiveData;
+		this.existing = existing;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ArchiveUpdate{" + "index=" + index + ", archive=" + archiveData.getId() + ", new=" + isNew() + '}';
+	}
+
+	public int getIndex()
+	{
+		return index;
+	}
+
+	public int getArchiveId()
+	{
+		return archiveData.getId();
+	}
+
+	public ArchiveData getArchiveData()
+	{
+		return archiveData;
+	}
+
+	/**
+	 * @return the archive in the local store, or null if the archive is new
+	 */
+	public Archive getExisting()
+	{
+		return existing;
+	}
+
+	public boolean isNew()
+	{
+		return existing == null;
+	}
+
+	public int getFileCount()
+	{
+		return archiveData.getFiles().length;
+	}
+}
@@ -25,38 +25,27 @@
 package net.runelite.cache.client;
 
 import com.google.common.base.Stopwatch;
-import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
-import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Storage;
 import net.runelite.cache.fs.Store;
 import net.runelite.cache.index.ArchiveData;
 import net.runelite.cache.index.IndexData;
-import net.runelite.protocol.update.decoders.HandshakeResponseDecoder;
-import net.runelite.protocol.update.encoders.ArchiveRequestEncoder;
-import net.runelite.protocol.update.encoders.EncryptionEncoder;
-import net.runelite.protocol.api.update.ArchiveRequestPacket;
 import net.runelite.protocol.api.login.HandshakeResponseType;
 import net.runelite.cache.util.Crc32;
-import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
-import net.runelite.protocol.handshake.UpdateHandshakeEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,20 +56,21 @@ public class CacheClient implements AutoCloseable
 	private static final String HOST = "oldschool1.runescape.com";
 	private static final int PORT = 43594;
 
-	private static final int MAX_REQUESTS = 19; // too many and the server closes the conncetion
+	private static final int MAX_REQUESTS = 19; // per connection, too many and the server closes the conncetion
+	// downloaded archives which may wait to be verified and stored, a slow
+	// download watcher holds back further requests once this is reached
+	private static final int MAX_UNPROCESSED = 512;
 
 	private final Store store; // store cache will be written to
 	private final String host;
+	private final int port;
 	private final int clientRevision;
 	private DownloadWatcher watcher;
 
-	private ClientState state;
-
-	private final EventLoopGroup group = new NioEventLoopGroup(1);
-	private Channel channel;
-
-	private CompletableFuture<HandshakeResponseType> handshakeFuture;
-	private final Queue<PendingFileRequest> requests = new ArrayDeque<>();
+	private final EventLoopGroup group;
+	private final List<CacheConnection> connections = new ArrayList<>();
+	private final AtomicInteger nextConnection = new AtomicInteger();
+	private final Semaphore unprocessed = new Semaphore(MAX_UNPROCESSED);
 
 	public CacheClient(Store store, int clientRevision)
 	{
@@ -88,10 +78,33 @@ public class CacheClient implements AutoCloseable
 	}
 
 	public CacheClient(Store store, String host, int clientRevision)
+	{
+		this(store, host, clientRevision, 1);
+	}
+
+	/**
+	 * @param connections number of connections to download with
+	 */
+	public CacheClient(Store store, String host, int clientRevision, int connections)
+	{
+		this(store, host, PORT, clientRevision, connections);
+	}
+
+	/**
+	 * @param connections number of connections to download with
+	 */
+	public CacheClient(Store store, String host, int port, int clientRevision, int connections)
 	{
 		this.store = store;
 		this.host = host;
+		this.port = port;
 		this.clientRevision = clientRevision;
+		this.group = new NioEventLoopGroup(connections);
+
+		for (int i = 0; i < connections; ++i)
+		{
+			this.connections.add(new CacheConnection(i, MAX_REQUESTS));
+		}
 	}
 
 	public CacheClient(Store store, int clientRevision, DownloadWatcher watcher)
@@ -100,62 +113,47 @@ public class CacheClient implements AutoCloseable
 		this.watcher = watcher;
 	}
 
-	public void connect()
+	public CacheClient(Store store, int clientRevision, DownloadWatcher watcher, int connections)
 	{
-		Bootstrap b = new Bootstrap();
-		b.group(group)
-			.channel(NioSocketChannel.class)
-			.option(ChannelOption.TCP_NODELAY, true)
-			.handler(new ChannelInitializer<SocketChannel>()
-			{
-				@Override
-				public void initChannel(SocketChannel ch) throws Exception
-				{
-					ChannelPipeline p = ch.pipeline();
-
-					//p.addFirst(new HttpProxyHandler(new InetSocketAddress("runelite.net", 3128)));
-					p.addLast("decoder", new HandshakeResponseDecoder());
-
-					p.addLast(
-						new CacheClientHandler(),
-						new HandshakeResponseHandler(CacheClient.this),
-						new ArchiveResponseHandler(CacheClient.this)
-					);
-
-					p.addLast(
-						new UpdateHandshakeEncoder(),
-						new EncryptionEncoder(),
-						new ArchiveRequestEncoder()
-					);
-				}
-			});
+		this(store, HOST, clientRevision, connections);
+		this.watcher = watcher;
+	}
 
-		// Start the client.
-		ChannelFuture f = b.connect(host, PORT).syncUninterruptibly();
-		channel = f.channel();
+	public void connect()
+	{
+		for (CacheConnection connection : connections)
+		{
+			connection.connect(group, host, port);
+		}
 	}
 
+	/**
+	 * Handshake on all connections
+	 *
+	 * @return the first response which is not ok, or ok if every connection
+	 * is ok
+	 */
 	public CompletableFuture<HandshakeResponseType> handshake()
 	{
-		UpdateHandshakePacket handshakePacket = new UpdateHandshakePacket();
-		handshakePacket.setRevision(getClientRevision());
-
-		state = ClientState.HANDSHAKING;
-
-		assert handshakeFuture == null;
-		handshakeFuture = new CompletableFuture<>();
-
-		channel.writeAndFlush(handshakePacket);
-
-		logger.info("Sent handshake with revision {}", handshakePacket.getRevision());
-
-		return handshakeFuture;
+		List<CompletableFuture<HandshakeResponseType>> futures = connections.stream()
+			.map(connection -> connection.handshake(clientRevision))
+			.collect(Collectors.toList());
+
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+			.thenApply(v -> futures.stream()
+				.map(CompletableFuture::join)
+				.filter(response -> response != HandshakeResponseType.RESPONSE_OK)
+				.findFirst()
+				.orElse(HandshakeResponseType.RESPONSE_OK));
 	}
 
 	@Override
 	public void close()
 	{
-		channel.close().syncUninterruptibly();
+		for (CacheConnection connection : connections)
+		{
+			connection.close();
+		}
 		group.shutdownGracefully();
 	}
 
@@ -166,24 +164,21 @@ public class CacheClient implements AutoCloseable
 
 	public ClientState getState()
 	{
-		return state;
-	}
-
-	void setState(ClientState state)
-	{
-		this.state = state;
-	}
-
-	CompletableFuture<HandshakeResponseType> getHandshakeFuture()
-	{
-		return handshakeFuture;
+		for (CacheConnection connection : connections)
+		{
+			if (connection.getState() != ClientState.CONNECTED)
+			{
+				return connection.getState();
+			}
+		}
+		return ClientState.CONNECTED;
 	}
 
 	public List<IndexInfo> requestIndexes() throws IOException
 	{
 		logger.info("Requesting indexes");
 
-		FileResult result = requestFile(255, 255, true).join();
+		FileResult result = join(requestFile(255, 255, true));
 		result.decompress(null);
 
 		ByteBuf buffer = Unpooled.wrappedBuffer(result.getContents());
@@ -200,54 +195,40 @@ public class CacheClient implements AutoCloseable
 		return indexInfo;
 	}
 
+	/**
+	 * Download all out of date archives. Only the reference tables of
+	 * indexes which have changed are requested, and only the archives which
+	 * differ from them are downloaded. Downloaded archives are verified
+	 * and saved, or passed to the download watcher, off of the network
+	 * threads, and so the download watcher may be called concurrently.
+	 *
+	 * @throws IOException
+	 */
 	public void download() throws IOException
 	{
 		Stopwatch stopwatch = Stopwatch.createStarted();
 
-		List<IndexInfo> indexes = requestIndexes();
+		UpdatePlanner planner = new UpdatePlanner(store);
+		List<IndexInfo> indexes = planner.findChangedIndexes(requestIndexes());
+
+		// pipeline the requests for all of the reference tables
+		List<CompletableFuture<FileResult>> indexFutures = new ArrayList<>();
 		for (IndexInfo indexInfo : indexes)
 		{
-			int i = indexInfo.getId();
-			int crc = indexInfo.getCrc();
-			int revision = indexInfo.getRevision();
-
-			Index index = store.findIndex(i);
-
-			if (index == null)
-			{
-				logger.info("Index {} does not exist, creating", i);
-			}
-			else if (index.getRevision() != revision)
-			{
-				if (revision < index.getRevision())
-				{
-					logger.warn("Index {} revision is going BACKWARDS! (our revision {}, their revision {})", index.getId(), index.getRevision(), revision);
-				}
-				else
-				{
-					logger.info("Index {} has the wrong revision (our revision {}, their revision {})", index.getId(), index.getRevision(), revision);
-				}
-			}
-			else if (index.getCrc() != crc)
-			{
-				logger.warn("Index {} CRC has changed! (our crc {}, their crc {})",
-					index.getCrc(), index.getCrc(), crc);
-			}
-			else
-			{
-				// despite the index being up to date, not everything
-				// can be downloaded, eg. for tracks.
-				logger.info("Index {} is up to date", index.getId());
-			}
+			indexFutures.add(requestFile(255, indexInfo.getId(), false));
+		}
+		flush();
 
-			logger.info("Downloading index {}", i);
+		UpdatePlan plan = new UpdatePlan();
+		for (int n = 0; n < indexes.size(); ++n)
+		{
+			IndexInfo indexInfo = indexes.get(n);
+			int i = indexInfo.getId();
 
-			FileResult indexFileResult = requestFile(255, i, true).join();
+			FileResult indexFileResult = join(indexFutures.get(n));
 			indexFileResult.decompress(null);
 
-			logger.info("Downloaded index {}", i);
-
-			if (indexFileResult.getCrc() != crc)
+			if (indexFileResult.getCrc() != indexInfo.getCrc())
 			{
 				logger.warn("Corrupted download for index {}", i);
 				continue;
@@ -256,6 +237,9 @@ public class CacheClient implements AutoCloseable
 			IndexData indexData = new IndexData();
 			indexData.load(indexFileResult.getContents());
 
+			Index index = store.findIndex(i);
+			planner.planIndex(plan, index, i, indexData);
+
 			if (index == null)
 			{
 				index = store.addIndex(i);
@@ -264,196 +248,177 @@ public class CacheClient implements AutoCloseable
 			// update index settings
 			index.setProtocol(indexData.getProtocol());
 			index.setNamed(indexData.isNamed());
-			index.setCrc(crc);
-			index.setRevision(revision);
-
-			logger.info("Index {} has {} archives", i, indexData.getArchives().length);
-
-			for (ArchiveData ad : indexData.getArchives())
-			{
-				Archive existing = index.getArchive(ad.getId());
-
-				if (existing != null && existing.getRevision() == ad.getRevision()
-					&& existing.getCrc() == ad.getCrc()
-					&& existing.getNameHash() == ad.getNameHash())
-				{
-					logger.debug("Archive {}/{} in index {} is up to date",
-						ad.getId(), indexData.getArchives().length, index.getId());
-					continue;
-				}
-
-				if (existing == null)
-				{
-					logger.info("Archive {}/{} in index {} is out of date, downloading",
-						ad.getId(), indexData.getArchives().length, index.getId());
-				}
-				else if (ad.getRevision() < existing.getRevision())
-				{
-					logger.warn("Archive {}/{} in index {} revision is going BACKWARDS! (our revision {}, their revision {})",
-						ad.getId(), indexData.getArchives().length, index.getId(),
-						existing.getRevision(), ad.getRevision());
-				}
-				else
-				{
-					logger.info("Archive {}/{} in index {} is out of date, downloading. " +
-						"revision: ours: {} theirs: {}, crc: ours: {} theirs {}, name: ours {} theirs {}",
-						ad.getId(), indexData.getArchives().length, index.getId(),
-						existing.getRevision(), ad.getRevision(),
-						existing.getCrc(), ad.getCrc(),
-						existing.getNameHash(), ad.getNameHash());
-				}
-
-				final Archive archive = existing == null
-					? index.addArchive(ad.getId())
-					: existing;
-
-				archive.setRevision(ad.getRevision());
-				archive.setCrc(ad.getCrc());
-				archive.setNameHash(ad.getNameHash());
+			index.setCrc(indexInfo.getCrc());
+			index.setRevision(indexInfo.getRevision());
+		}
 
-				// Add files
-				archive.setFileData(ad.getFiles());
+		logger.info("Downloading {} archives containing {} files from {} indexes",
+			plan.getArchiveCount(), plan.getFileCount(), indexes.size());
 
-				CompletableFuture<FileResult> future = requestFile(index.getId(), ad.getId(), false);
-				future.handle((fr, ex) ->
-				{
-					byte[] data = fr.getCompressedData();
+		AtomicLong bytes = new AtomicLong();
+		List<CompletableFuture<Void>> downloads = new ArrayList<>(plan.getArchiveCount());
+		for (ArchiveUpdate update : plan.getUpdates())
+		{
+			ArchiveData ad = update.getArchiveData();
+			Archive archive = update.isNew()
+				? store.findIndex(update.getIndex()).addArchive(ad.getId())
+				: update.getExisting();
 
-					Crc32 crc32 = new Crc32();
-					crc32.update(data, 0, data.length);
-					int hash = crc32.getHash();
+			archive.setRevision(ad.getRevision());
+			archive.setCrc(ad.getCrc());
+			archive.setNameHash(ad.getNameHash());
 
-					if (hash != archive.getCrc())
-					{
-						logger.warn("crc mismatch on downloaded archive {}/{}: {} != {}",
-							archive.getIndex().getId(), archive.getArchiveId(),
-							hash, archive.getCrc());
-						throw new RuntimeException("crc mismatch");
-					}
+			// Add files
+			archive.setFileData(ad.getFiles());
 
-					if (watcher != null)
-					{
-						watcher.downloadComplete(archive, data);
-					}
-					else
+			acquireUnprocessed();
+			CompletableFuture<Void> download;
+			try
+			{
+				download = requestFile(update.getIndex(), ad.getId(), false)
+					.thenAcceptAsync(fr ->
 					{
-						try
-						{
-							Storage storage = store.getStorage();
-							storage.saveArchive(archive, data);
-						}
-						catch (IOException ex1)
-						{
-							logger.warn("unable to save archive data", ex1);
-						}
-					}
-					return null;
-				});
+						bytes.addAndGet(fr.getCompressedData().length);
+						archiveDownloaded(archive, fr);
+					});
+			}
+			catch (IOException | RuntimeException ex)
+			{
+				unprocessed.release();
+				throw ex;
 			}
+			download.whenComplete((v, ex) -> unprocessed.release());
+			downloads.add(download);
 		}
 
 		// flush any pending requests
-		channel.flush();
+		flush();
 
-		while (!requests.isEmpty())
+		try
 		{
-			// wait for pending requests
-			synchronized (this)
-			{
-				try
-				{
-					wait();
-				}
-				catch (InterruptedException ex)
-				{
-					logger.warn(null, ex);
-				}
-			}
+			CompletableFuture.allOf(downloads.toArray(new CompletableFuture[0])).join();
+		}
+		catch (CompletionException ex)
+		{
+			throw new IOException("error downloading archives", ex.getCause());
 		}
 
 		stopwatch.stop();
-		logger.info("Download completed in {}", stopwatch);
+		logger.info("Download of {} archives ({} bytes) completed in {}", plan.getArchiveCount(), bytes.get(), stopwatch);
 	}
 
-	private synchronized CompletableFuture<FileResult> requestFile(int index, int fileId, boolean flush)
+	private void archiveDownloaded(Archive archive, FileResult fr)
 	{
-		if (state != ClientState.CONNECTED)
+		byte[] data = fr.getCompressedData();
+
+		Crc32 crc32 = new Crc32();
+		crc32.update(data, 0, data.length);
+		int hash = crc32.getHash();
+
+		if (hash != archive.getCrc())
 		{
-			throw new IllegalStateException("Can't request files until connected!");
+			logger.warn("crc mismatch on downloaded archive {}/{}: {} != {}",
+				archive.getIndex().getId(), archive.getArchiveId(),
+				hash, archive.getCrc());
+			// fail the download so the new crc and revision are not saved with stale data
+			throw new RuntimeException("crc mismatch");
 		}
 
-		if (!flush)
+		if (watcher != null)
+		{
+			watcher.downloadComplete(archive, data);
+		}
+		else
 		{
-			while (requests.size() >= MAX_REQUESTS)
+			try
 			{
-				channel.flush();
-
-				try
-				{
-					wait();
-				}
-				catch (InterruptedException ex)
+				Storage storage = store.getStorage();
+				synchronized (storage)
 				{
-					logger.warn("interrupted while waiting for requests", ex);
+					storage.saveArchive(archive, data);
 				}
 			}
+			catch (IOException ex)
+			{
+				logger.warn("unable to save archive data", ex);
+			}
 		}
+	}
 
-		ArchiveRequestPacket archiveRequest = new ArchiveRequestPacket();
-		archiveRequest.setPriority(false);
-		archiveRequest.setIndex(index);
-		archiveRequest.setArchive(fileId);
-
-		CompletableFuture<FileResult> future = new CompletableFuture<>();
-		PendingFileRequest pf = new PendingFileRequest(index,
-			fileId, future);
+	private CompletableFuture<FileResult> requestFile(int index, int fileId, boolean flush) throws IOException
+	{
+		return acquireConnection().request(index, fileId, flush);
+	}
 
-		logger.trace("Sending request for {}/{}", index, fileId);
+	/**
+	 * Reserve a request on the connection with room in its window, waiting
+	 * for a response if every window is full
+	 */
+	private CacheConnection acquireConnection() throws IOException
+	{
+		int start = nextConnection.getAndIncrement();
+		for (int i = 0; i < connections.size(); ++i)
+		{
+			CacheConnection connection = connections.get(Math.floorMod(start + i, connections.size()));
+			if (connection.tryAcquire())
+			{
+				return connection;
+			}
+		}
 
-		requests.add(pf);
+		// the requests which are waiting to be sent must go out before any responses can come back
+		flush();
 
-		if (!flush)
+		CacheConnection connection = connections.get(Math.floorMod(start, connections.size()));
+		try
 		{
-			channel.write(archiveRequest);
+			connection.acquire();
 		}
-		else
+		catch (InterruptedException ex)
 		{
-			channel.writeAndFlush(archiveRequest);
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for requests", ex);
 		}
-
-		return future;
+		return connection;
 	}
 
-	private PendingFileRequest findRequest(int index, int file)
+	private void acquireUnprocessed() throws IOException
 	{
-		for (PendingFileRequest pr : requests)
+		if (unprocessed.tryAcquire())
 		{
-			if (pr.getIndex() == index && pr.getArchive() == file)
-			{
-				return pr;
-			}
+			return;
 		}
-		return null;
-	}
 
-	protected synchronized void onFileFinish(int index, int file, byte[] compressedData)
-	{
-		PendingFileRequest pr = findRequest(index, file);
+		flush();
 
-		if (pr == null)
+		try
 		{
-			logger.warn("File download {}/{} with no pending request", index, file);
-			return;
+			unprocessed.acquire();
 		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for archives to be processed", ex);
+		}
+	}
 
-		requests.remove(pr);
-
-		notify();
-
-		FileResult result = new FileResult(index, file, compressedData);
-
-		logger.debug("File download finished for index {} file {}, length {}", index, file, compressedData.length);
+	private void flush()
+	{
+		for (CacheConnection connection : connections)
+		{
+			connection.flush();
+		}
+	}
 
-		pr.getFuture().complete(result);
+	private static FileResult join(CompletableFuture<FileResult> future) throws IOException
+	{
+		try
+		{
+			return future.join();
+		}
+		catch (CompletionException ex)
+		{
+			throw new IOException("error downloading file", ex.getCause());
+		}
 	}
 }
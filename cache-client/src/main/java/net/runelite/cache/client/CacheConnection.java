@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
+import net.runelite.protocol.api.login.HandshakeResponseType;
+import net.runelite.protocol.api.update.ArchiveRequestPacket;
+import net.runelite.protocol.handshake.UpdateHandshakeEncoder;
+import net.runelite.protocol.update.decoders.HandshakeResponseDecoder;
+import net.runelite.protocol.update.encoders.ArchiveRequestEncoder;
+import net.runelite.protocol.update.encoders.EncryptionEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single connection to the update server, with its own window of
+ * pipelined requests
+ */
+class CacheConnection
+{
+	private static final Logger logger = LoggerFactory.getLogger(CacheConnection.class);
+
+	private final int id;
+	private final Semaphore window;
+	private final Map<Integer, PendingFileRequest> requests = new ConcurrentHashMap<>();
+
+	private Channel channel;
+	private volatile ClientState state;
+	private CompletableFuture<HandshakeResponseType> handshakeFuture;
+
+	CacheConnection(int id, int maxRequests)
+	{
+		this.id = id;
+		this.window = new Semaphore(maxRequests);
+	}
+
+	void connect(EventLoopGroup group, String host, int port)
+	{
+		Bootstrap b = new Bootstrap();
+		b.group(group)
+			.channel(NioSocketChannel.class)
+			.option(ChannelOption.TCP_NODELAY, true)
+			.handler(new ChannelInitializer<SocketChannel>()
+			{
+				@Override
+				public void initChannel(SocketChannel ch) throws Exception
+				{
+					ChannelPipeline p = ch.pipeline();
+
+					p.addLast("decoder", new HandshakeResponseDecoder());
+
+					p.addLast(
+						new CacheClientHandler(CacheConnection.this),
+						new HandshakeResponseHandler(CacheConnection.this),
+						new ArchiveResponseHandler(CacheConnection.this)
+					);
+
+					p.addLast(
+						new UpdateHandshakeEncoder(),
+						new EncryptionEncoder(),
+						new ArchiveRequestEncoder()
+					);
+				}
+			});
+
+		channel = b.connect(host, port).syncUninterruptibly().channel();
+	}
+
+	CompletableFuture<HandshakeResponseType> handshake(int revision)
+	{
+		UpdateHandshakePacket handshakePacket = new UpdateHandshakePacket();
+		handshakePacket.setRevision(revision);
+
+		state = ClientState.HANDSHAKING;
+
+		assert handshakeFuture == null;
+		handshakeFuture = new CompletableFuture<>();
+
+		channel.writeAndFlush(handshakePacket);
+
+		logger.info("Sent handshake with revision {} on connection {}", handshakePacket.getRevision(), id);
+
+		return handshakeFuture;
+	}
+
+	void close()
+	{
+		channel.close().syncUninterruptibly();
+	}
+
+	ClientState getState()
+	{
+		return state;
+	}
+
+	void setState(ClientState state)
+	{
+		this.state = state;
+	}
+
+	CompletableFuture<HandshakeResponseType> getHandshakeFuture()
+	{
+		return handshakeFuture;
+	}
+
+	int getPending()
+	{
+		return requests.size();
+	}
+
+	boolean tryAcquire()
+	{
+		return window.tryAcquire();
+	}
+
+	void acquire() throws InterruptedException
+	{
+		window.acquire();
+	}
+
+	void flush()
+	{
+		channel.flush();
+	}
+
+	/**
+	 * Send a request. A slot in the window must have been acquired.
+	 */
+	CompletableFuture<FileResult> request(int index, int archive, boolean flush)
+	{
+		if (state != ClientState.CONNECTED)
+		{
+			window.release();
+			throw new IllegalStateException("Can't request files until connected!");
+		}
+
+		CompletableFuture<FileResult> future = new CompletableFuture<>();
+		PendingFileRequest existing = requests.putIfAbsent(key(index, archive), new PendingFileRequest(index, archive, future));
+		if (existing != null)
+		{
+			// already requested on this connection
+			window.release();
+			return existing.getFuture();
+		}
+
+		ArchiveRequestPacket archiveRequest = new ArchiveRequestPacket();
+		archiveRequest.setPriority(false);
+		archiveRequest.setIndex(index);
+		archiveRequest.setArchive(archive);
+
+		logger.trace("Sending request for {}/{} on connection {}", index, archive, id);
+
+		if (flush)
+		{
+			channel.writeAndFlush(archiveRequest);
+		}
+		else
+		{
+			channel.write(archiveRequest);
+		}
+
+		return future;
+	}
+
+	void onFileFinish(int index, int archive, byte[] compressedData)
+	{
+		PendingFileRequest pr = requests.remove(key(index, archive));
+
+		if (pr == null)
+		{
+			logger.warn("File download {}/{} with no pending request", index, archive);
+			return;
+		}
+
+		window.release();
+
+		logger.debug("File download finished for index {} file {}, length {}", index, archive, compressedData.length);
+
+		pr.getFuture().complete(new FileResult(index, archive, compressedData));
+	}
+
+	void onClose()
+	{
+		state = ClientState.DISCONNECTED;
+
+		// fail anything still waiting for a response, so downloads don't hang
+		for (PendingFileRequest pr : requests.values())
+		{
+			if (requests.remove(key(pr.getIndex(), pr.getArchive()), pr))
+			{
+				window.release();
+				pr.getFuture().completeExceptionally(new IOException("connection " + id + " closed with request for "
+					+ pr.getIndex() + "/" + pr.getArchive() + " pending"));
+			}
+		}
+
+		if (handshakeFuture != null && !handshakeFuture.isDone())
+		{
+			handshakeFuture.completeExceptionally(new IOException("connection " + id + " closed during handshake"));
+		}
+	}
+
+	private static int key(int index, int archive)
+	{
+		return index << 16 | archive;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The set of archives an update will download. Archives the local store
+ * doesn't have at all are fetched first, followed by the archives with the
+ * most files, so the largest transfers are not left waiting at the end of
+ * the pipeline.
+ */
+public class UpdatePlan
+{
+	static final Comparator<ArchiveUpdate> ORDER = Comparator.comparing(ArchiveUpdate::isNew).reversed()
+		.thenComparing(Comparator.comparingInt(ArchiveUpdate::getFileCount).reversed())
+		.thenComparingInt(ArchiveUpdate::getIndex)
+		.thenComparingInt(ArchiveUpdate::getArchiveId);
+
+	private final List<ArchiveUpdate> updates = new ArrayList<>();
+	private int fileCount;
+
+	void add(ArchiveUpdate update)
+	{
+		updates.add(update);
+		fileCount += update.getFileCount();
+	}
+
+	/**
+	 * @return the archives to download, in the order they should be
+	 * requested
+	 */
+	public List<ArchiveUpdate> getUpdates()
+	{
+		updates.sort(ORDER);
+		return Collections.unmodifiableList(updates);
+	}
+
+	public int getArchiveCount()
+	{
+		return updates.size();
+	}
+
+	/**
+	 * @return the number of files in all of the archives to download
+	 */
+	public int getFileCount()
+	{
+		return fileCount;
+	}
+
+	public boolean isEmpty()
+	{
+		return updates.isEmpty();
+	}
+}
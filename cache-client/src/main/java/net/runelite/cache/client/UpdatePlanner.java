@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.ArchiveData;
+import net.runelite.cache.index.IndexData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes which parts of a store are out of date with respect to the
+ * server, so that only the reference tables and archives which have changed
+ * are requested.
+ */
+public class UpdatePlanner
+{
+	private static final Logger logger = LoggerFactory.getLogger(UpdatePlanner.class);
+
+	private final Store store;
+
+	public UpdatePlanner(Store store)
+	{
+		this.store = store;
+	}
+
+	/**
+	 * Find the indexes whose reference tables have changed. Indexes with the
+	 * same crc and revision as the local store have identical reference
+	 * tables, and so can't contain any changed archives.
+	 *
+	 * @param indexes indexes from the server
+	 * @return the indexes which must be updated
+	 */
+	public List<IndexInfo> findChangedIndexes(List<IndexInfo> indexes)
+	{
+		List<IndexInfo> changed = new ArrayList<>();
+
+		for (IndexInfo indexInfo : indexes)
+		{
+			int i = indexInfo.getId();
+			int crc = indexInfo.getCrc();
+			int revision = indexInfo.getRevision();
+
+			Index index = store.findIndex(i);
+
+			if (index == null)
+			{
+				logger.info("Index {} does not exist, creating", i);
+			}
+			else if (index.getRevision() != revision)
+			{
+				if (revision < index.getRevision())
+				{
+					logger.warn("Index {} revision is going BACKWARDS! (our revision {}, their revision {})", i, index.getRevision(), revision);
+				}
+				else
+				{
+					logger.info("Index {} has the wrong revision (our revision {}, their revision {})", i, index.getRevision(), revision);
+				}
+			}
+			else if (index.getCrc() != crc)
+			{
+				logger.warn("Index {} CRC has changed! (our crc {}, their crc {})", i, index.getCrc(), crc);
+			}
+			else
+			{
+				logger.info("Index {} is up to date", i);
+				continue;
+			}
+
+			changed.add(indexInfo);
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Add the archives of an index which differ from the new reference
+	 * table to the plan.
+	 *
+	 * @param plan
+	 * @param index the local index, or null if it doesn't exist
+	 * @param indexId
+	 * @param indexData the server's reference table for the index
+	 */
+	public void planIndex(UpdatePlan plan, Index index, int indexId, IndexData indexData)
+	{
+		int total = indexData.getArchives().length;
+		int changed = 0;
+
+		for (ArchiveData ad : indexData.getArchives())
+		{
+			Archive existing = index != null ? index.getArchive(ad.getId()) : null;
+
+			if (existing != null && existing.getRevision() == ad.getRevision()
+				&& existing.getCrc() == ad.getCrc()
+				&& existing.getNameHash() == ad.getNameHash())
+			{
+				continue;
+			}
+
+			if (existing == null)
+			{
+				logger.debug("Archive {}/{} in index {} is new", ad.getId(), total, indexId);
+			}
+			else if (ad.getRevision() < existing.getRevision())
+			{
+				logger.warn("Archive {}/{} in index {} revision is going BACKWARDS! (our revision {}, their revision {})",
+					ad.getId(), total, indexId, existing.getRevision(), ad.getRevision());
+			}
+			else
+			{
+				logger.debug("Archive {}/{} in index {} is out of date. " +
+						"revision: ours: {} theirs: {}, crc: ours: {} theirs {}, name: ours {} theirs {}",
+					ad.getId(), total, indexId,
+					existing.getRevision(), ad.getRevision(),
+					existing.getCrc(), ad.getCrc(),
+					existing.getNameHash(), ad.getNameHash());
+			}
+
+			plan.add(new ArchiveUpdate(indexId, ad, existing));
+			++changed;
+		}
+
+		logger.info("Index {} has {} archives, {} out of date", indexId, total, changed);
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.ArchiveData;
+import net.runelite.cache.index.FileData;
+import net.runelite.cache.index.IndexData;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UpdatePlannerTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFindChangedIndexes() throws IOException
+	{
+		try (Store store = new Store(folder.getRoot()))
+		{
+			Index index0 = store.addIndex(0);
+			index0.setCrc(1);
+			index0.setRevision(2);
+
+			Index index1 = store.addIndex(1);
+			index1.setCrc(3);
+			index1.setRevision(4);
+
+			UpdatePlanner planner = new UpdatePlanner(store);
+			List<IndexInfo> changed = planner.findChangedIndexes(Arrays.asList(
+				new IndexInfo(0, 1, 2), // up to date
+				new IndexInfo(1, 5, 4), // crc changed
+				new IndexInfo(2, 6, 7) // new
+			));
+
+			assertEquals(Arrays.asList(new IndexInfo(1, 5, 4), new IndexInfo(2, 6, 7)), changed);
+		}
+	}
+
+	@Test
+	public void testPlanIndex() throws IOException
+	{
+		try (Store store = new Store(folder.getRoot()))
+		{
+			Index index = store.addIndex(0);
+			Archive unchanged = index.addArchive(0);
+			unchanged.setCrc(10);
+			unchanged.setRevision(1);
+			Archive changed = index.addArchive(1);
+			changed.setCrc(11);
+			changed.setRevision(1);
+
+			IndexData indexData = new IndexData();
+			indexData.setArchives(new ArchiveData[]{
+				archive(0, 10, 1, 1),
+				archive(1, 12, 2, 5),
+				archive(2, 13, 1, 2),
+				archive(3, 14, 1, 1)
+			});
+
+			UpdatePlan plan = new UpdatePlan();
+			new UpdatePlanner(store).planIndex(plan, index, 0, indexData);
+
+			assertEquals(3, plan.getArchiveCount());
+			assertEquals(8, plan.getFileCount());
+
+			List<ArchiveUpdate> updates = plan.getUpdates();
+			// new archives first, then by size
+			assertEquals(2, updates.get(0).getArchiveId());
+			assertTrue(updates.get(0).isNew());
+			assertEquals(3, updates.get(1).getArchiveId());
+			assertNull(updates.get(1).getExisting());
+			assertEquals(1, updates.get(2).getArchiveId());
+			assertFalse(updates.get(2).isNew());
+			assertEquals(changed, updates.get(2).getExisting());
+		}
+	}
+
+	private static ArchiveData archive(int id, int crc, int revision, int files)
+	{
+		ArchiveData ad = new ArchiveData();
+		ad.setId(id);
+		ad.setCrc(crc);
+		ad.setRevision(revision);
+
+		FileData[] fileData = new FileData[files];
+		for (int i = 0; i < files; ++i)
+		{
+			fileData[i] = new FileData();
+			fileData[i].setId(i);
+		}
+		ad.setFiles(fileData);
+		return ad;
+	}
+}
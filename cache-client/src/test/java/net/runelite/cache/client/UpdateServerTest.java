@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.index.FileData;
+import net.runelite.protocol.api.login.HandshakeResponseType;
+import net.runelite.protocol.update.server.UpdateServer;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Downloads a cache from a local update server
+ */
+public class UpdateServerTest
+{
+	private static final int REVISION = 180;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDownload() throws Exception
+	{
+		File serverFolder = folder.newFolder();
+		Random random = new Random(42L);
+
+		try (Store store = new Store(serverFolder))
+		{
+			for (int i = 0; i < 3; ++i)
+			{
+				Index index = store.addIndex(i);
+				index.setRevision(i + 1);
+
+				for (int j = 0; j < 50; ++j)
+				{
+					// some archives span many chunks
+					byte[] contents = new byte[random.nextInt(j % 10 == 0 ? 20_000 : 600) + 1];
+					random.nextBytes(contents);
+
+					Container container = new Container(j % 2 == 0 ? CompressionType.NONE : CompressionType.GZ, j);
+					container.compress(contents, null);
+
+					FileData file = new FileData();
+					file.setId(0);
+
+					Archive archive = index.addArchive(j * 3);
+					archive.setRevision(j);
+					archive.setFileData(new FileData[]{file});
+					store.getStorage().saveArchive(archive, container.data);
+				}
+			}
+
+			store.save();
+		}
+
+		try (Store serverStore = new Store(serverFolder);
+			Store clientStore = new Store(folder.newFolder()))
+		{
+			serverStore.load();
+			clientStore.load();
+
+			try (UpdateServer server = new UpdateServer(serverStore, REVISION))
+			{
+				int port = server.bind(0);
+
+				try (CacheClient outdated = new CacheClient(clientStore, "localhost", port, REVISION - 1, 1))
+				{
+					outdated.connect();
+					assertEquals(HandshakeResponseType.RESPONSE_OUTDATED, outdated.handshake().join());
+				}
+
+				try (CacheClient client = new CacheClient(clientStore, "localhost", port, REVISION, 3))
+				{
+					client.connect();
+					assertEquals(HandshakeResponseType.RESPONSE_OK, client.handshake().join());
+					client.download();
+				}
+			}
+
+			assertEquals(serverStore.getIndexes().size(), clientStore.getIndexes().size());
+			for (Index index : serverStore.getIndexes())
+			{
+				Index clientIndex = clientStore.findIndex(index.getId());
+				assertNotNull(clientIndex);
+				assertEquals(index.getCrc(), clientIndex.getCrc());
+				assertEquals(index.getRevision(), clientIndex.getRevision());
+				assertEquals(index.getArchives().size(), clientIndex.getArchives().size());
+
+				for (Archive archive : index.getArchives())
+				{
+					Archive clientArchive = clientIndex.getArchive(archive.getArchiveId());
+					assertNotNull(clientArchive);
+					assertEquals(archive.getCrc(), clientArchive.getCrc());
+
+					// the revision appended to the stored archive is not sent
+					byte[] data = clientStore.getStorage().loadArchive(clientArchive);
+					assertArrayEquals(Arrays.copyOf(serverStore.getStorage().loadArchive(archive), data.length), data);
+				}
+			}
+		}
+	}
+
+	@Test(timeout = 30_000)
+	public void testMissingArchive() throws Exception
+	{
+		File serverFolder = folder.newFolder();
+
+		try (Store store = new Store(serverFolder))
+		{
+			Index index = store.addIndex(0);
+			index.setRevision(1);
+
+			// the archive is in the reference table, but its data was never saved
+			FileData file = new FileData();
+			file.setId(0);
+
+			Archive archive = index.addArchive(0);
+			archive.setRevision(1);
+			archive.setFileData(new FileData[]{file});
+
+			store.save();
+		}
+
+		try (Store serverStore = new Store(serverFolder);
+			Store clientStore = new Store(folder.newFolder()))
+		{
+			serverStore.load();
+			clientStore.load();
+
+			try (UpdateServer server = new UpdateServer(serverStore, REVISION);
+				CacheClient client = new CacheClient(clientStore, "localhost", server.bind(0), REVISION, 1))
+			{
+				client.connect();
+				assertEquals(HandshakeResponseType.RESPONSE_OK, client.handshake().join());
+
+				// the server closes the connection instead of never responding
+				client.download();
+				fail("download of a missing archive succeeded");
+			}
+			catch (IOException ex)
+			{
+				// expected
+			}
+		}
+	}
+}
@@ -63,6 +63,15 @@ class CacheDAO
 			.executeAndFetchLazy(ArchiveEntry.class);
 	}
 
+	/**
+	 * @return hashes of all archives, which have all been uploaded
+	 */
+	public List<byte[]> findArchiveHashes(Connection con)
+	{
+		return con.createQuery("select distinct hash from archive where hash is not null")
+			.executeScalarList(byte[].class);
+	}
+
 	public CacheEntry createCache(Connection con, int revision, Instant date)
 	{
 		int cacheId = con.createQuery("insert into cache (revision, date) values (:revision, :date)")
@@ -96,15 +105,31 @@ class CacheDAO
 		return entry;
 	}
 
-	public void associateArchiveToIndex(Connection con, ArchiveEntry archive, IndexEntry index)
+	public void associateArchivesToIndex(Connection con, List<ArchiveEntry> archives, IndexEntry index)
 	{
 		if (associateArchive == null)
 		{
 			associateArchive = con.createQuery("insert into index_archive (`index`, archive) values (:index, :archive)");
 		}
-		associateArchive
-			.addParameter("index", index.getId())
-			.addParameter("archive", archive.getId())
+
+		for (ArchiveEntry archive : archives)
+		{
+			associateArchive
+				.addParameter("index", index.getId())
+				.addParameter("archive", archive.getId())
+				.addToBatch();
+		}
+		associateArchive.executeBatch();
+	}
+
+	/**
+	 * Associate all of the archives of one index to another
+	 */
+	public void copyIndexArchives(Connection con, IndexEntry from, IndexEntry to)
+	{
+		con.createQuery("insert into index_archive (`index`, archive) select :to, archive from index_archive where `index` = :from")
+			.addParameter("to", to.getId())
+			.addParameter("from", from.getId())
 			.executeUpdate();
 	}
 
@@ -25,7 +25,11 @@
 package net.runelite.cache.updater;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Storage;
@@ -43,6 +47,11 @@ public class CacheStorage implements Storage
 	private final CacheDAO cacheDao;
 	private final Connection con;
 
+	// rows of the loaded cache, so unchanged indexes and archives can be reused when saving
+	private final Map<Integer, IndexEntry> indexEntries = new HashMap<>();
+	private final Map<Integer, Integer> archiveCounts = new HashMap<>();
+	private final Map<Archive, ArchiveEntry> archiveEntries = new IdentityHashMap<>();
+
 	public CacheStorage(CacheEntry cacheEntry, CacheDAO cacheDao, Connection con)
 	{
 		this.cacheEntry = cacheEntry;
@@ -79,6 +88,7 @@ public class CacheStorage implements Storage
 			Index index = store.addIndex(indexEntry.getIndexId());
 			index.setCrc(indexEntry.getCrc());
 			index.setRevision(indexEntry.getRevision());
+			indexEntries.put(index.getId(), indexEntry);
 
 			try (ResultSetIterable<ArchiveEntry> archives = cacheDao.findArchivesForIndex(con, indexEntry))
 			{
@@ -94,10 +104,13 @@ public class CacheStorage implements Storage
 					archive.setCrc(archiveEntry.getCrc());
 					archive.setRevision(archiveEntry.getRevision());
 					archive.setHash(archiveEntry.getHash());
+					archiveEntries.put(archive, archiveEntry);
 
 					// File data is not necessary for cache updating
 				}
 			}
+
+			archiveCounts.put(index.getId(), index.getArchives().size());
 		}
 	}
 
@@ -107,28 +120,80 @@ public class CacheStorage implements Storage
 		for (Index index : store.getIndexes())
 		{
 			IndexEntry entry = cacheDao.createIndex(con, cacheEntry, index.getId(), index.getCrc(), index.getRevision());
+			IndexEntry previous = indexEntries.put(index.getId(), entry);
+
+			if (previous != null && isUnchanged(previous, index))
+			{
+				// the new index has exactly the archives of the previous one
+				cacheDao.copyIndexArchives(con, previous, entry);
+				continue;
+			}
 
+			List<ArchiveEntry> entries = new ArrayList<>(index.getArchives().size());
 			for (Archive archive : index.getArchives())
 			{
-				ArchiveEntry archiveEntry = cacheDao.findArchive(con, entry, archive.getArchiveId(),
-					archive.getNameHash(), archive.getCrc(), archive.getRevision());
-				if (archiveEntry == null)
+				ArchiveEntry archiveEntry = archiveEntries.get(archive);
+				if (archiveEntry == null || !matches(archiveEntry, archive))
 				{
-					byte[] hash = archive.getHash();
-					archiveEntry = cacheDao.createArchive(con, entry, archive.getArchiveId(),
-						archive.getNameHash(), archive.getCrc(), archive.getRevision(), hash);
-
-					for (FileData file : archive.getFileData())
-					{
-						cacheDao.associateFileToArchive(con, archiveEntry, file.getId(), file.getNameHash());
-					}
+					archiveEntry = saveArchive(entry, archive);
+					archiveEntries.put(archive, archiveEntry);
 				}
 
-				cacheDao.associateArchiveToIndex(con, archiveEntry, entry);
+				entries.add(archiveEntry);
 			}
+
+			cacheDao.associateArchivesToIndex(con, entries, entry);
+			archiveCounts.put(index.getId(), entries.size());
 		}
 	}
 
+	private ArchiveEntry saveArchive(IndexEntry entry, Archive archive)
+	{
+		ArchiveEntry archiveEntry = cacheDao.findArchive(con, entry, archive.getArchiveId(),
+			archive.getNameHash(), archive.getCrc(), archive.getRevision());
+		if (archiveEntry == null)
+		{
+			byte[] hash = archive.getHash();
+			archiveEntry = cacheDao.createArchive(con, entry, archive.getArchiveId(),
+				archive.getNameHash(), archive.getCrc(), archive.getRevision(), hash);
+
+			for (FileData file : archive.getFileData())
+			{
+				cacheDao.associateFileToArchive(con, archiveEntry, file.getId(), file.getNameHash());
+			}
+		}
+		return archiveEntry;
+	}
+
+	private boolean isUnchanged(IndexEntry previous, Index index)
+	{
+		if (previous.getCrc() != index.getCrc()
+			|| previous.getRevision() != index.getRevision()
+			|| archiveCounts.getOrDefault(index.getId(), -1) != index.getArchives().size())
+		{
+			return false;
+		}
+
+		for (Archive archive : index.getArchives())
+		{
+			ArchiveEntry archiveEntry = archiveEntries.get(archive);
+			if (archiveEntry == null || !matches(archiveEntry, archive))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean matches(ArchiveEntry archiveEntry, Archive archive)
+	{
+		return archiveEntry.getArchiveId() == archive.getArchiveId()
+			&& archiveEntry.getNameHash() == archive.getNameHash()
+			&& archiveEntry.getCrc() == archive.getCrc()
+			&& archiveEntry.getRevision() == archive.getRevision();
+	}
+
 	@Override
 	public byte[] loadArchive(Archive archive) throws IOException
 	{
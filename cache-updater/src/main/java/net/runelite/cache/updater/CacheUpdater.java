@@ -24,18 +24,17 @@
  */
 package net.runelite.cache.updater;
 
+import com.google.common.io.BaseEncoding;
 import io.minio.MinioClient;
 import io.minio.errors.InvalidEndpointException;
 import io.minio.errors.InvalidPortException;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.stream.Collectors;
 import net.runelite.cache.client.CacheClient;
 import net.runelite.cache.client.IndexInfo;
-import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Store;
 import net.runelite.cache.updater.beans.CacheEntry;
 import net.runelite.cache.updater.beans.IndexEntry;
@@ -57,6 +56,10 @@ public class CacheUpdater implements CommandLineRunner
 {
 	private static final Logger logger = LoggerFactory.getLogger(CacheUpdater.class);
 
+	private static final int DOWNLOAD_CONNECTIONS = 4;
+	private static final int UPLOAD_THREADS = 8;
+	private static final int UPLOAD_QUEUE_SIZE = 256;
+
 	private final Sql2o sql2o;
 	private final MinioClient minioClient;
 
@@ -92,44 +95,44 @@ public class CacheUpdater implements CommandLineRunner
 			Store store = new Store(storage);
 			store.load();
 
-			ExecutorService executor = Executors.newSingleThreadExecutor();
+			Set<String> hashes = cacheDao.findArchiveHashes(con).stream()
+				.map(BaseEncoding.base16()::encode)
+				.collect(Collectors.toSet());
 
-			CacheClient client = new CacheClient(store, rsVersion,
-				(Archive archive, byte[] data) -> executor.submit(new CacheUploader(minioClient, minioBucket, archive, data)));
+			try (CacheUploader uploader = new CacheUploader(minioClient, minioBucket, UPLOAD_THREADS, UPLOAD_QUEUE_SIZE, hashes))
+			{
+				CacheClient client = new CacheClient(store, rsVersion, uploader, DOWNLOAD_CONNECTIONS);
 
-			client.connect();
-			HandshakeResponseType result = client.handshake().join();
+				client.connect();
+				HandshakeResponseType result = client.handshake().join();
 
-			if (result != HandshakeResponseType.RESPONSE_OK)
-			{
-				logger.warn("Out of date!");
-				return;
-			}
+				if (result != HandshakeResponseType.RESPONSE_OK)
+				{
+					logger.warn("Out of date!");
+					return;
+				}
 
-			List<IndexInfo> indexes = client.requestIndexes();
-			List<IndexEntry> entries = cacheDao.findIndexesForCache(con, cache);
+				List<IndexInfo> indexes = client.requestIndexes();
+				List<IndexEntry> entries = cacheDao.findIndexesForCache(con, cache);
 
-			if (!checkOutOfDate(indexes, entries))
-			{
-				logger.info("All up to date.");
-				return;
-			}
+				if (!checkOutOfDate(indexes, entries))
+				{
+					logger.info("All up to date.");
+					return;
+				}
 
-			client.download();
+				client.download();
+
+				// ensure objects are added to the store before they become
+				// visible in the database, and that their hashes are known
+				uploader.close();
+			}
 
 			CacheEntry newCache = created ? cache : cacheDao.createCache(con, rsVersion, Instant.now());
 
 			storage.setCacheEntry(newCache);
 			store.save();
 
-			// ensure objects are added to the store before they become
-			// visible in the database
-			executor.shutdown();
-			while (!executor.awaitTermination(1, TimeUnit.SECONDS))
-			{
-				logger.debug("Waiting for termination of executor...");
-			}
-
 			// commit database
 			con.commit();
 		}
@@ -24,8 +24,10 @@
  */
 package net.runelite.cache.updater;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.hash.Hashing;
 import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.minio.MinioClient;
 import io.minio.errors.ErrorResponseException;
 import io.minio.errors.InsufficientDataException;
@@ -35,62 +37,243 @@ import io.minio.errors.InvalidBucketNameException;
 import io.minio.errors.NoResponseException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Value;
+import net.runelite.cache.client.DownloadWatcher;
 import net.runelite.cache.fs.Archive;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xmlpull.v1.XmlPullParserException;
 
-public class CacheUploader implements Runnable
+/**
+ * Hashes downloaded archives and uploads them to the object store on a pool
+ * of threads. Objects are stored by the hash of their contents, so archives
+ * whose hash is already known to be stored are not uploaded again. When the
+ * queue of archives waiting to be uploaded is full, the download is held
+ * back until it drains.
+ */
+public class CacheUploader implements DownloadWatcher, AutoCloseable
 {
 	private static final Logger logger = LoggerFactory.getLogger(CacheUploader.class);
 
 	private final MinioClient minioClient;
 	private final String minioBucket;
-	private final Archive archive;
-	private final byte[] data;
+	private final ExecutorService executor;
+	private final Semaphore queue;
+	// base16 hashes of objects which are stored or being uploaded
+	private final Set<String> hashes = ConcurrentHashMap.newKeySet();
+
+	private final Stopwatch stopwatch = Stopwatch.createStarted();
+	private final LongAdder downloaded = new LongAdder();
+	private final LongAdder downloadedBytes = new LongAdder();
+	private final LongAdder hashed = new LongAdder();
+	private final LongAdder hashedBytes = new LongAdder();
+	private final LongAdder hashNanos = new LongAdder();
+	private final LongAdder uploaded = new LongAdder();
+	private final LongAdder uploadedBytes = new LongAdder();
+	private final LongAdder uploadNanos = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private boolean closed;
 
-	public CacheUploader(MinioClient minioClient, String minioBucket, Archive archive, byte[] data)
+	/**
+	 * @param minioClient
+	 * @param minioBucket
+	 * @param threads number of concurrent uploads
+	 * @param queueSize number of archives which may wait to be uploaded
+	 * before the download is held back
+	 * @param knownHashes base16 hashes of objects already in the bucket
+	 */
+	public CacheUploader(MinioClient minioClient, String minioBucket, int threads, int queueSize, Collection<String> knownHashes)
 	{
 		this.minioClient = minioClient;
 		this.minioBucket = minioBucket;
-		this.archive = archive;
-		this.data = data;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+			.setNameFormat("cache-uploader-%d")
+			.setDaemon(true)
+			.build());
+		this.queue = new Semaphore(threads + queueSize);
+		this.hashes.addAll(knownHashes);
 	}
 
 	@Override
-	public void run()
+	public void downloadComplete(Archive archive, byte[] data)
 	{
+		downloaded.increment();
+		downloadedBytes.add(data.length);
+
+		queue.acquireUninterruptibly();
+		try
+		{
+			executor.execute(() ->
+			{
+				try
+				{
+					upload(archive, data);
+				}
+				finally
+				{
+					queue.release();
+				}
+			});
+		}
+		catch (RuntimeException ex)
+		{
+			queue.release();
+			throw ex;
+		}
+	}
+
+	private void upload(Archive archive, byte[] data)
+	{
+		long start = System.nanoTime();
 		byte[] hash = Hashing.sha256().hashBytes(data).asBytes();
-		String hashStr = BaseEncoding.base16().encode(hash);
+		hashNanos.add(System.nanoTime() - start);
+		hashed.increment();
+		hashedBytes.add(data.length);
 
 		archive.setHash(hash);
 
+		String hashStr = BaseEncoding.base16().encode(hash);
+		if (!hashes.add(hashStr))
+		{
+			// already stored, or being uploaded by another thread
+			skipped.increment();
+			return;
+		}
+
 		String path = new StringBuilder()
 			.append(hashStr, 0, 2)
 			.append('/')
 			.append(hashStr.substring(2))
 			.toString();
 
+		start = System.nanoTime();
 		try
 		{
-			try (InputStream in = minioClient.getObject(minioBucket, path))
-			{
-				return; // already exists
-			}
-			catch (ErrorResponseException ex)
+			if (exists(path))
 			{
-				// doesn't exist
+				skipped.increment();
+				return;
 			}
 
 			minioClient.putObject(minioBucket, path, new ByteArrayInputStream(data), data.length, "binary/octet-stream");
+			uploaded.increment();
+			uploadedBytes.add(data.length);
 		}
 		catch (ErrorResponseException | InsufficientDataException | InternalException | InvalidArgumentException | InvalidBucketNameException | NoResponseException | IOException | InvalidKeyException | NoSuchAlgorithmException | XmlPullParserException ex)
 		{
+			hashes.remove(hashStr);
 			logger.warn("unable to upload data to store", ex);
 		}
+		finally
+		{
+			uploadNanos.add(System.nanoTime() - start);
+		}
+	}
+
+	private boolean exists(String path) throws InsufficientDataException, InternalException, InvalidBucketNameException, NoResponseException, IOException, InvalidKeyException, NoSuchAlgorithmException, XmlPullParserException
+	{
+		try
+		{
+			minioClient.statObject(minioBucket, path);
+			return true;
+		}
+		catch (ErrorResponseException ex)
+		{
+			// doesn't exist
+			return false;
+		}
 	}
 
+	/**
+	 * Wait for all queued archives to be uploaded
+	 */
+	@Override
+	public synchronized void close() throws InterruptedException
+	{
+		if (closed)
+		{
+			return;
+		}
+
+		executor.shutdown();
+		while (!executor.awaitTermination(1, TimeUnit.SECONDS))
+		{
+			logger.debug("Waiting for termination of executor...");
+		}
+
+		closed = true;
+
+		Stats stats = getStats();
+		logger.info("Received {} archives ({} bytes) at {} KB/s", stats.getDownloaded(), stats.getDownloadedBytes(), (long) stats.getDownloadThroughput() / 1024);
+		logger.info("Hashed {} archives at {} KB/s per thread", stats.getHashed(), (long) stats.getHashThroughput() / 1024);
+		logger.info("Uploaded {} archives ({} bytes) at {} KB/s per thread, skipped {} already stored",
+			stats.getUploaded(), stats.getUploadedBytes(), (long) stats.getUploadThroughput() / 1024, stats.getSkipped());
+	}
+
+	public Stats getStats()
+	{
+		return new Stats(stopwatch.elapsed(TimeUnit.NANOSECONDS),
+			downloaded.sum(), downloadedBytes.sum(),
+			hashed.sum(), hashedBytes.sum(), hashNanos.sum(),
+			uploaded.sum(), uploadedBytes.sum(), uploadNanos.sum(),
+			skipped.sum());
+	}
+
+	/**
+	 * Counters for each stage of the pipeline. Hash and upload times are
+	 * summed over all threads.
+	 */
+	@Value
+	public static class Stats
+	{
+		private long elapsedNanos;
+		private long downloaded;
+		private long downloadedBytes;
+		private long hashed;
+		private long hashedBytes;
+		private long hashNanos;
+		private long uploaded;
+		private long uploadedBytes;
+		private long uploadNanos;
+		private long skipped;
+
+		/**
+		 * @return rate archive data was received from the download, in bytes per second
+		 */
+		public double getDownloadThroughput()
+		{
+			return throughput(downloadedBytes, elapsedNanos);
+		}
+
+		/**
+		 * @return rate of hashing per thread, in bytes per second
+		 */
+		public double getHashThroughput()
+		{
+			return throughput(hashedBytes, hashNanos);
+		}
+
+		/**
+		 * @return rate of uploading per thread, in bytes per second
+		 */
+		public double getUploadThroughput()
+		{
+			return throughput(uploadedBytes, uploadNanos);
+		}
+
+		private static double throughput(long bytes, long nanos)
+		{
+			return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+		}
+	}
 }
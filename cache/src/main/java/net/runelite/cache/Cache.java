@@ -27,6 +27,9 @@ package net.runelite.cache;
 import java.io.File;
 import java.io.IOException;
 import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.StoreVerifier;
+import net.runelite.cache.fs.VerificationReport;
+import net.runelite.cache.fs.jagex.DiskStorageCompactor;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -45,6 +48,8 @@ public class Cache
 		options.addOption(null, "npcs", true, "directory to dump npcs to");
 		options.addOption(null, "objects", true, "directory to dump objects to");
 		options.addOption(null, "sprites", true, "directory to dump sprites to");
+		options.addOption(null, "verify", false, "verify the integrity of the cache");
+		options.addOption(null, "compact", false, "compact the cache, reclaiming space left by rewritten archives");
 
 		CommandLineParser parser = new DefaultParser();
 		CommandLine cmd;
@@ -61,9 +66,27 @@ public class Cache
 
 		String cache = cmd.getOptionValue("cache");
 
+		if (cmd.hasOption("compact"))
+		{
+			// the cache can't be open while compacting
+			DiskStorageCompactor.CompactionResult result = new DiskStorageCompactor(new File(cache)).compact();
+			System.out.println("Compacted " + result.getArchives() + " archives, "
+				+ result.getOldSize() + " -> " + result.getNewSize() + " bytes");
+			return;
+		}
+
 		Store store = loadStore(cache);
 
-		if (cmd.hasOption("items"))
+		if (cmd.hasOption("verify"))
+		{
+			VerificationReport report = new StoreVerifier(store).verify();
+			System.out.println(report.toJson());
+			if (!report.isOk())
+			{
+				System.exit(1);
+			}
+		}
+		else if (cmd.hasOption("items"))
 		{
 			String itemdir = cmd.getOptionValue("items");
 
@@ -124,7 +147,8 @@ public class Cache
 	private static Store loadStore(String cache) throws IOException
 	{
 		Store store = new Store(new File(cache));
-		store.load();
+		// each dump only needs one or two indexes
+		store.loadLazy();
 		return store;
 	}
 
@@ -51,8 +51,7 @@ public class HeightMapDumper
 	public void load() throws IOException
 	{
 		regionLoader = new RegionLoader(store);
-		regionLoader.loadRegions();
-		regionLoader.calculateBounds();
+		regionLoader.loadRegionsParallel();
 	}
 
 	public BufferedImage drawHeightMap(int z)
@@ -62,8 +62,7 @@ public class InterfaceManager
 		for (Archive archive : index.getArchives())
 		{
 			int archiveId = archive.getArchiveId();
-			byte[] archiveData = storage.loadArchive(archive);
-			ArchiveFiles files = archive.getFiles(archiveData);
+			ArchiveFiles files = storage.loadArchiveFiles(archive);
 
 			InterfaceDefinition[] ifaces = interfaces[archiveId];
 			if (ifaces == null)
@@ -28,9 +28,17 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import javax.imageio.ImageIO;
 import lombok.Getter;
 import lombok.Setter;
 import net.runelite.cache.definitions.AreaDefinition;
@@ -64,6 +72,7 @@ public class MapImageDumper
 	private static final int MAPICON_MAX_WIDTH = 5; // scale minimap icons down to this size so they fit..
 	private static final int MAPICON_MAX_HEIGHT = 6;
 	private static final int BLEND = 5; // number of surrounding tiles for ground blending
+	private static final int MAX_REGION_COORD = 255;
 
 	private static int[] colorPalette = new ColorPalette(0.9d, 0, 512).getColorPalette();
 
@@ -158,6 +167,149 @@ public class MapImageDumper
 		return image;
 	}
 
+	/**
+	 * Draw a square tile of the map. Tile (tileX, tileY) covers the regions
+	 * from (tileX * tileRegions, tileY * tileRegions) up to, but not
+	 * including, ((tileX + 1) * tileRegions, (tileY + 1) * tileRegions).
+	 * Objects and icons of neighboring regions which overlap the tile are
+	 * drawn, so that tiles put together match {@link #drawMap(int)}.
+	 *
+	 * @param z plane
+	 * @param tileX tile x
+	 * @param tileY tile y
+	 * @param tileRegions width and height of the tile, in regions
+	 * @return the tile, or null if there are no regions in the tile
+	 */
+	public BufferedImage drawMapTile(int z, int tileX, int tileY, int tileRegions)
+	{
+		int baseRegionX = tileX * tileRegions;
+		int baseRegionY = tileY * tileRegions;
+
+		// the tile is drawn with a margin of one region on each side, which is cropped
+		List<Region> inner = new ArrayList<>();
+		List<Region> all = new ArrayList<>();
+		for (int rx = baseRegionX - 1; rx <= baseRegionX + tileRegions; ++rx)
+		{
+			for (int ry = baseRegionY - 1; ry <= baseRegionY + tileRegions; ++ry)
+			{
+				if (rx < 0 || ry < 0 || rx > MAX_REGION_COORD || ry > MAX_REGION_COORD)
+				{
+					continue;
+				}
+
+				Region region = regionLoader.findRegionForWorldCoordinates(rx * Region.X, ry * Region.Y);
+				if (region == null)
+				{
+					continue;
+				}
+
+				all.add(region);
+				if (rx >= baseRegionX && rx < baseRegionX + tileRegions
+					&& ry >= baseRegionY && ry < baseRegionY + tileRegions)
+				{
+					inner.add(region);
+				}
+			}
+		}
+
+		if (inner.isEmpty())
+		{
+			return null;
+		}
+
+		int regionPixelsX = Region.X * MAP_SCALE;
+		int regionPixelsY = Region.Y * MAP_SCALE;
+		BufferedImage image = new BufferedImage((tileRegions + 2) * regionPixelsX, (tileRegions + 2) * regionPixelsY, BufferedImage.TYPE_INT_RGB);
+
+		// base of the west most and north most regions of the margin
+		int originX = (baseRegionX - 1) * Region.X;
+		int originY = (baseRegionY + tileRegions) * Region.Y;
+
+		for (Region region : inner)
+		{
+			drawMap(image, region.getBaseX() - originX, originY - region.getBaseY(), z, region);
+		}
+
+		for (Region region : all)
+		{
+			drawObjects(image, region.getBaseX() - originX, originY - region.getBaseY(), region, z);
+		}
+
+		for (Region region : all)
+		{
+			drawMapIcons(image, region.getBaseX() - originX, originY - region.getBaseY(), region, z);
+		}
+
+		return image.getSubimage(regionPixelsX, regionPixelsY, tileRegions * regionPixelsX, tileRegions * regionPixelsY);
+	}
+
+	public void drawMapTiles(int z, int tileRegions, File outDir) throws IOException
+	{
+		drawMapTiles(z, tileRegions, outDir, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Draw the map as tiles of tileRegions x tileRegions regions, in
+	 * parallel, writing each tile to outDir as tileX_tileY.png as soon as
+	 * it is drawn. Tiles without any regions are skipped. Only the tiles
+	 * being drawn are held in memory.
+	 *
+	 * @param z plane
+	 * @param tileRegions width and height of the tiles, in regions
+	 * @param outDir directory to write the tiles to
+	 * @param pool pool to draw the tiles on
+	 * @throws IOException
+	 * @see #drawMapTile(int, int, int, int)
+	 */
+	public void drawMapTiles(int z, int tileRegions, File outDir, ForkJoinPool pool) throws IOException
+	{
+		int minTileX = regionLoader.getLowestX().getRegionX() / tileRegions;
+		int maxTileX = regionLoader.getHighestX().getRegionX() / tileRegions;
+		int minTileY = regionLoader.getLowestY().getRegionY() / tileRegions;
+		int maxTileY = regionLoader.getHighestY().getRegionY() / tileRegions;
+		int tilesY = maxTileY - minTileY + 1;
+
+		outDir.mkdirs();
+
+		try
+		{
+			pool.submit(() -> IntStream.range(0, (maxTileX - minTileX + 1) * tilesY).parallel().forEach(i ->
+			{
+				int tileX = minTileX + i / tilesY;
+				int tileY = minTileY + i % tilesY;
+
+				BufferedImage tile = drawMapTile(z, tileX, tileY, tileRegions);
+				if (tile == null)
+				{
+					return;
+				}
+
+				try
+				{
+					ImageIO.write(tile, "png", new File(outDir, tileX + "_" + tileY + ".png"));
+				}
+				catch (IOException ex)
+				{
+					throw new UncheckedIOException(ex);
+				}
+			})).get();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted drawing map tiles", ex);
+		}
+		catch (ExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			throw new IOException("error drawing map tiles", cause);
+		}
+	}
+
 	private void drawMap(BufferedImage image, int drawBaseX, int drawBaseY, int z, Region region)
 	{
 		int[][] map = new int[Region.X * MAP_SCALE][Region.Y * MAP_SCALE];
@@ -894,8 +1046,7 @@ public class MapImageDumper
 	private void loadRegions(Store store) throws IOException
 	{
 		regionLoader = new RegionLoader(store);
-		regionLoader.loadRegions();
-		regionLoader.calculateBounds();
+		regionLoader.loadRegionsParallel();
 
 		logger.info("North most region: {}", regionLoader.getLowestY().getBaseY());
 		logger.info("South most region: {}", regionLoader.getHighestY().getBaseY());
@@ -909,8 +1060,7 @@ public class MapImageDumper
 		Index index = store.getIndex(IndexType.CONFIGS);
 		Archive archive = index.getArchive(ConfigType.UNDERLAY.getId());
 
-		byte[] archiveData = storage.loadArchive(archive);
-		ArchiveFiles files = archive.getFiles(archiveData);
+		ArchiveFiles files = storage.loadArchiveFiles(archive);
 
 		for (FSFile file : files.getFiles())
 		{
@@ -932,8 +1082,7 @@ public class MapImageDumper
 		Index index = store.getIndex(IndexType.CONFIGS);
 		Archive archive = index.getArchive(ConfigType.OVERLAY.getId());
 
-		byte[] archiveData = storage.loadArchive(archive);
-		ArchiveFiles files = archive.getFiles(archiveData);
+		ArchiveFiles files = storage.loadArchiveFiles(archive);
 
 		for (FSFile file : files.getFiles())
 		{
@@ -974,8 +1123,13 @@ public class MapImageDumper
 					BufferedImage spriteImage = new BufferedImage(sprite.getWidth(), sprite.getHeight(), BufferedImage.TYPE_INT_ARGB);
 					spriteImage.setRGB(0, 0, sprite.getWidth(), sprite.getHeight(), sprite.getPixels(), 0, sprite.getWidth());
 
-					// scale image down so it fits
-					Image scaledImage = spriteImage.getScaledInstance(MAPICON_MAX_WIDTH, MAPICON_MAX_HEIGHT, 0);
+					// scale image down so it fits. Draw it to a buffered image so
+					// that it is fully loaded before tiles are drawn concurrently
+					Image scaledInstance = spriteImage.getScaledInstance(MAPICON_MAX_WIDTH, MAPICON_MAX_HEIGHT, 0);
+					BufferedImage scaledImage = new BufferedImage(MAPICON_MAX_WIDTH, MAPICON_MAX_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+					Graphics2D scaledGraphics = scaledImage.createGraphics();
+					scaledGraphics.drawImage(scaledInstance, 0, 0, null);
+					scaledGraphics.dispose();
 
 					assert scaledMapIcons.containsKey(sprite.getFrame()) == false;
 					scaledMapIcons.put(sprite.getFrame(), scaledImage);
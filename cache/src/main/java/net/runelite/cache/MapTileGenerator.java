@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import com.google.gson.Gson;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import javax.imageio.ImageIO;
+import lombok.Getter;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.region.Region;
+import net.runelite.cache.util.XteaKeyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates a pyramid of map tiles for each plane. Level 0 holds tiles of
+ * tileRegions x tileRegions regions drawn by {@link MapImageDumper}, and
+ * each following level halves the resolution, until a single tile covers
+ * the whole map. Tiles are written to {@code <plane>/<level>/<x>_<y>.png},
+ * where y increases northward.
+ * <p>
+ * A manifest of the content of each region is kept next to the tiles, so
+ * that later runs only redraw the tiles affected by regions which changed.
+ */
+public class MapTileGenerator
+{
+	private static final Logger logger = LoggerFactory.getLogger(MapTileGenerator.class);
+
+	private static final String MANIFEST = "manifest.json";
+	// bump when the output of the map renderer changes
+	private static final int VERSION = 1;
+	private static final int MAX_REGION = 32768;
+	private static final int REGIONS_PER_AXIS = 256;
+
+	private final Store store;
+	private final File outDir;
+	private final int tileRegions;
+	private final ForkJoinPool pool;
+
+	@Getter
+	private int tilesDrawn;
+
+	public MapTileGenerator(Store store, File outDir, int tileRegions)
+	{
+		this(store, outDir, tileRegions, ForkJoinPool.commonPool());
+	}
+
+	public MapTileGenerator(Store store, File outDir, int tileRegions, ForkJoinPool pool)
+	{
+		if (Integer.bitCount(tileRegions) != 1 || tileRegions > REGIONS_PER_AXIS)
+		{
+			throw new IllegalArgumentException("tile size must be a power of two of at most " + REGIONS_PER_AXIS);
+		}
+
+		this.store = store;
+		this.outDir = outDir;
+		this.tileRegions = tileRegions;
+		this.pool = pool;
+	}
+
+	/**
+	 * Bring the tiles in the output directory up to date with the store
+	 *
+	 * @throws IOException
+	 */
+	public void generate() throws IOException
+	{
+		XteaKeyManager keyManager = new XteaKeyManager();
+		keyManager.loadKeys();
+
+		Manifest manifest = new Manifest();
+		manifest.version = VERSION;
+		manifest.tileRegions = tileRegions;
+		manifest.baseHash = baseHash();
+		manifest.regions = regionHashes(keyManager);
+
+		Manifest previous = readManifest();
+		Set<Integer> dirty;
+		if (previous == null || previous.version != VERSION || previous.tileRegions != tileRegions
+			|| previous.baseHash != manifest.baseHash)
+		{
+			logger.info("Drawing all tiles");
+			dirty = new HashSet<>();
+			manifest.regions.keySet().forEach(regionId -> dirty.add(tileOf(regionId, tileRegions)));
+			if (previous != null && previous.tileRegions == tileRegions)
+			{
+				// remove tiles of regions which no longer exist
+				previous.regions.keySet().forEach(regionId -> dirty.add(tileOf(regionId, tileRegions)));
+			}
+		}
+		else
+		{
+			dirty = dirtyTiles(previous.regions, manifest.regions, tileRegions);
+		}
+
+		tilesDrawn = 0;
+		if (dirty.isEmpty())
+		{
+			logger.info("Map tiles are up to date");
+			return;
+		}
+
+		logger.info("Drawing {} tiles", dirty.size());
+
+		MapImageDumper dumper = new MapImageDumper(store);
+		dumper.load();
+
+		for (int z = 0; z < Region.Z; ++z)
+		{
+			generatePlane(dumper, z, dirty);
+		}
+
+		writeManifest(manifest);
+	}
+
+	private void generatePlane(MapImageDumper dumper, int z, Set<Integer> dirty) throws IOException
+	{
+		File planeDir = new File(outDir, Integer.toString(z));
+
+		File baseDir = new File(planeDir, "0");
+		baseDir.mkdirs();
+		forEachParallel(dirty, tile ->
+		{
+			BufferedImage image = dumper.drawMapTile(z, tile >> 16, tile & 0xffff, tileRegions);
+			writeTile(baseDir, tile, image);
+		});
+
+		File levelDir = baseDir;
+		Set<Integer> levelDirty = dirty;
+		for (int level = 1, tiles = REGIONS_PER_AXIS / tileRegions; tiles > 1; ++level, tiles >>= 1)
+		{
+			File childDir = levelDir;
+			File parentDir = levelDir = new File(planeDir, Integer.toString(level));
+			parentDir.mkdirs();
+
+			Set<Integer> parents = new HashSet<>();
+			for (int tile : levelDirty)
+			{
+				parents.add((tile >> 17) << 16 | (tile & 0xffff) >> 1);
+			}
+
+			forEachParallel(parents, tile -> writeTile(parentDir, tile, downscale(childDir, tile >> 16, tile & 0xffff)));
+			levelDirty = parents;
+		}
+	}
+
+	/**
+	 * Combine the four tiles below a tile into it, at half their resolution
+	 */
+	private static BufferedImage downscale(File childDir, int x, int y)
+	{
+		BufferedImage image = null;
+		Graphics2D graphics = null;
+		for (int dx = 0; dx < 2; ++dx)
+		{
+			for (int dy = 0; dy < 2; ++dy)
+			{
+				File file = tileFile(childDir, (x * 2 + dx) << 16 | (y * 2 + dy));
+				if (!file.exists())
+				{
+					continue;
+				}
+
+				BufferedImage child;
+				try
+				{
+					child = ImageIO.read(file);
+				}
+				catch (IOException ex)
+				{
+					throw new UncheckedIOException(ex);
+				}
+
+				int width = child.getWidth() / 2;
+				int height = child.getHeight() / 2;
+				if (image == null)
+				{
+					image = new BufferedImage(child.getWidth(), child.getHeight(), BufferedImage.TYPE_INT_RGB);
+					graphics = image.createGraphics();
+					graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				}
+
+				// y increases northward, so the northern children are drawn at the top
+				graphics.drawImage(child, dx * width, (1 - dy) * height, width, height, null);
+			}
+		}
+
+		if (graphics != null)
+		{
+			graphics.dispose();
+		}
+		return image;
+	}
+
+	private static void writeTile(File dir, int tile, BufferedImage image)
+	{
+		File file = tileFile(dir, tile);
+		try
+		{
+			if (image == null)
+			{
+				Files.deleteIfExists(file.toPath());
+			}
+			else
+			{
+				ImageIO.write(image, "png", file);
+			}
+		}
+		catch (IOException ex)
+		{
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static File tileFile(File dir, int tile)
+	{
+		return new File(dir, (tile >> 16) + "_" + (tile & 0xffff) + ".png");
+	}
+
+	private void forEachParallel(Set<Integer> tiles, IntConsumer consumer) throws IOException
+	{
+		try
+		{
+			pool.submit(() -> tiles.parallelStream().mapToInt(Integer::intValue).forEach(consumer)).get();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted drawing map tiles", ex);
+		}
+		catch (ExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			throw new IOException("error drawing map tiles", cause);
+		}
+		tilesDrawn += tiles.size();
+	}
+
+	/**
+	 * Hash of the content shared by all regions: the underlay, overlay,
+	 * object and area definitions, the sprites and the textures
+	 */
+	private long baseHash()
+	{
+		Index configs = store.getIndex(IndexType.CONFIGS);
+		long hash = 1;
+		for (ConfigType type : new ConfigType[]{ConfigType.UNDERLAY, ConfigType.OVERLAY, ConfigType.OBJECT, ConfigType.AREA})
+		{
+			Archive archive = configs.getArchive(type.getId());
+			hash = 31 * hash + (archive != null ? archive.getCrc() : 0);
+		}
+		hash = 31 * hash + store.getIndex(IndexType.SPRITES).getCrc();
+		hash = 31 * hash + store.getIndex(IndexType.TEXTURES).getCrc();
+		return hash;
+	}
+
+	/**
+	 * Hash the content of each region from the crcs of its map and location
+	 * archives, and whether its locations can be decrypted
+	 */
+	private Map<Integer, Long> regionHashes(XteaKeyManager keyManager)
+	{
+		Index maps = store.getIndex(IndexType.MAPS);
+		Map<Integer, Long> hashes = new HashMap<>();
+		for (int i = 0; i < MAX_REGION; ++i)
+		{
+			int x = i >> 8;
+			int y = i & 0xFF;
+
+			Archive map = maps.findArchiveByName("m" + x + "_" + y);
+			Archive land = maps.findArchiveByName("l" + x + "_" + y);
+			if (map == null || land == null)
+			{
+				continue;
+			}
+
+			long landHash = keyManager.getKeys(i) != null ? land.getCrc() : 0;
+			hashes.put(i, (long) map.getCrc() << 32 | (landHash & 0xffffffffL));
+		}
+		return hashes;
+	}
+
+	/**
+	 * Find the tiles affected by changes in regions. Ground blending and
+	 * objects cross region boundaries, so a change in a region also affects
+	 * the tiles of the regions around it.
+	 *
+	 * @return tiles, as x << 16 | y
+	 */
+	static Set<Integer> dirtyTiles(Map<Integer, Long> previous, Map<Integer, Long> current, int tileRegions)
+	{
+		Set<Integer> changed = new HashSet<>();
+		for (Map.Entry<Integer, Long> entry : current.entrySet())
+		{
+			if (!Objects.equals(entry.getValue(), previous.get(entry.getKey())))
+			{
+				changed.add(entry.getKey());
+			}
+		}
+		for (Integer regionId : previous.keySet())
+		{
+			if (!current.containsKey(regionId))
+			{
+				changed.add(regionId);
+			}
+		}
+
+		Set<Integer> tiles = new HashSet<>();
+		for (int regionId : changed)
+		{
+			int x = regionId >> 8;
+			int y = regionId & 0xFF;
+			for (int dx = -1; dx <= 1; ++dx)
+			{
+				for (int dy = -1; dy <= 1; ++dy)
+				{
+					int rx = x + dx;
+					int ry = y + dy;
+					if (rx >= 0 && ry >= 0 && rx < REGIONS_PER_AXIS && ry < REGIONS_PER_AXIS)
+					{
+						tiles.add(tileOf(rx << 8 | ry, tileRegions));
+					}
+				}
+			}
+		}
+		return tiles;
+	}
+
+	private static int tileOf(int regionId, int tileRegions)
+	{
+		int x = (regionId >> 8) / tileRegions;
+		int y = (regionId & 0xFF) / tileRegions;
+		return x << 16 | y;
+	}
+
+	private Manifest readManifest() throws IOException
+	{
+		File file = new File(outDir, MANIFEST);
+		if (!file.exists())
+		{
+			return null;
+		}
+
+		try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+		{
+			return new Gson().fromJson(reader, Manifest.class);
+		}
+	}
+
+	private void writeManifest(Manifest manifest) throws IOException
+	{
+		File file = new File(outDir, MANIFEST);
+		File tmp = new File(outDir, MANIFEST + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8))
+		{
+			new Gson().toJson(manifest, writer);
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static class Manifest
+	{
+		private int version;
+		private int tileRegions;
+		private long baseHash;
+		private Map<Integer, Long> regions;
+	}
+}
@@ -59,8 +59,7 @@ public class ObjectManager
 		Index index = store.getIndex(IndexType.CONFIGS);
 		Archive archive = index.getArchive(ConfigType.OBJECT.getId());
 
-		byte[] archiveData = storage.loadArchive(archive);
-		ArchiveFiles files = archive.getFiles(archiveData);
+		ArchiveFiles files = storage.loadArchiveFiles(archive);
 
 		for (FSFile f : files.getFiles())
 		{
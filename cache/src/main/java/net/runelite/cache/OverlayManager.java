@@ -55,8 +55,7 @@ public class OverlayManager implements OverlayProvider
 		Index index = store.getIndex(IndexType.CONFIGS);
 		Archive archive = index.getArchive(ConfigType.OVERLAY.getId());
 
-		byte[] archiveData = storage.loadArchive(archive);
-		ArchiveFiles files = archive.getFiles(archiveData);
+		ArchiveFiles files = storage.loadArchiveFiles(archive);
 
 		for (FSFile file : files.getFiles())
 		{
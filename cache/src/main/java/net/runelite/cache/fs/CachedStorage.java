@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Value;
+
+/**
+ * A Storage which wraps another storage and keeps a size bounded, least
+ * recently used cache of decompressed archive files. Entries are keyed by the
+ * archive's crc and revision, so a modified archive is never served stale.
+ * <p>
+ * The returned {@link ArchiveFiles} are shared and must not be modified.
+ */
+public class CachedStorage implements Storage
+{
+	@Value
+	private static class ArchiveKey
+	{
+		private final int indexId;
+		private final int archiveId;
+		private final int revision;
+		private final int crc;
+		private final int[] keys;
+	}
+
+	private final Storage storage;
+	private final Cache<ArchiveKey, ArchiveFiles> cache;
+	private final AtomicLong residentBytes = new AtomicLong();
+
+	/**
+	 * @param storage storage to cache archives from
+	 * @param maximumBytes maximum total decompressed size of cached archives
+	 */
+	public CachedStorage(Storage storage, long maximumBytes)
+	{
+		this.storage = storage;
+		this.cache = CacheBuilder.newBuilder()
+			.maximumWeight(maximumBytes)
+			.weigher((ArchiveKey key, ArchiveFiles files) -> size(files))
+			.removalListener(this::removalListener)
+			.recordStats()
+			.build();
+	}
+
+	public Storage getStorage()
+	{
+		return storage;
+	}
+
+	@Override
+	public void init(Store store) throws IOException
+	{
+		storage.init(store);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		cache.invalidateAll();
+		storage.close();
+	}
+
+	@Override
+	public void load(Store store) throws IOException
+	{
+		storage.load(store);
+	}
+
+	@Override
+	public boolean canLoadIndex()
+	{
+		return storage.canLoadIndex();
+	}
+
+	@Override
+	public void loadIndex(Index index) throws IOException
+	{
+		storage.loadIndex(index);
+	}
+
+	@Override
+	public void save(Store store) throws IOException
+	{
+		storage.save(store);
+	}
+
+	@Override
+	public byte[] loadArchive(Archive archive) throws IOException
+	{
+		return storage.loadArchive(archive);
+	}
+
+	@Override
+	public void saveArchive(Archive archive, byte[] data) throws IOException
+	{
+		storage.saveArchive(archive, data);
+	}
+
+	@Override
+	public ArchiveFiles loadArchiveFiles(Archive archive, int[] keys) throws IOException
+	{
+		ArchiveKey key = new ArchiveKey(archive.getIndex().getId(), archive.getArchiveId(),
+			archive.getRevision(), archive.getCrc(), keys);
+
+		try
+		{
+			return cache.get(key, () ->
+			{
+				ArchiveFiles files = storage.loadArchiveFiles(archive, keys);
+				residentBytes.addAndGet(size(files));
+				return files;
+			});
+		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof IOException)
+			{
+				throw (IOException) ex.getCause();
+			}
+			throw new IOException(ex.getCause());
+		}
+	}
+
+	public void invalidateAll()
+	{
+		cache.invalidateAll();
+	}
+
+	public CacheStats getStats()
+	{
+		return cache.stats();
+	}
+
+	public double getHitRate()
+	{
+		return cache.stats().hitRate();
+	}
+
+	/**
+	 * @return total decompressed size of all cached archives
+	 */
+	public long getResidentBytes()
+	{
+		return residentBytes.get();
+	}
+
+	private void removalListener(RemovalNotification<ArchiveKey, ArchiveFiles> notification)
+	{
+		residentBytes.addAndGet(-size(notification.getValue()));
+	}
+
+	private static int size(ArchiveFiles files)
+	{
+		int size = 0;
+		for (FSFile file : files.getFiles())
+		{
+			size += file.getSize();
+		}
+		return size;
+	}
+}
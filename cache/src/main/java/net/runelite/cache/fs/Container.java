@@ -27,8 +27,9 @@ package net.runelite.cache.fs;
 import static com.google.common.primitives.Bytes.concat;
 import com.google.common.primitives.Ints;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import net.runelite.cache.fs.jagex.CompressionType;
-import net.runelite.cache.io.InputStream;
 import net.runelite.cache.io.OutputStream;
 import net.runelite.cache.util.BZip2;
 import net.runelite.cache.util.Crc32;
@@ -41,7 +42,16 @@ public class Container
 {
 	private static final Logger logger = LoggerFactory.getLogger(Container.class);
 
+	// sanity limit for the decompressed length, which is read after decryption and is garbage if the keys are wrong
+	private static final int MAX_DECOMPRESSED_LENGTH = 16 * 1024 * 1024;
+	// thread local buffers larger than this are not retained
+	private static final int MAX_POOLED_LENGTH = 2 * 1024 * 1024;
+
+	private static final ThreadLocal<byte[]> OUTPUT_BUFFER = new ThreadLocal<>();
+	private static final ThreadLocal<byte[]> SCRATCH_BUFFER = new ThreadLocal<>();
+
 	public byte[] data;
+	public int length; // length of data, which may be shorter than data when decompressed into a reused buffer
 	public int compression; // compression
 	public int revision;
 	public int crc; // crc of compressed data
@@ -88,119 +98,165 @@ public class Container
 		}
 
 		this.data = stream.flip();
+		this.length = this.data.length;
 	}
 
 	public static Container decompress(byte[] b, int[] keys) throws IOException
 	{
-		InputStream stream = new InputStream(b);
+		// decryption is done in place, so don't modify the caller's data
+		byte[] data = keys != null ? b.clone() : b;
+		return decompress(ByteBuffer.wrap(data), 0, data.length, keys, null, true);
+	}
 
-		int compression = stream.readUnsignedByte();
-		int compressedLength = stream.readInt();
+	/**
+	 * Decompress a container without allocating intermediate buffers. If the
+	 * container is encrypted it is decrypted in place in {@code buffer}. The
+	 * data is decompressed into {@code out}, or into a thread local buffer if
+	 * {@code out} is null or too small. A thread local buffer is only valid
+	 * until the next call to this method on the same thread.
+	 *
+	 * @param buffer buffer containing the container
+	 * @param offset offset of the container in the buffer
+	 * @param length length of the container
+	 * @param keys xtea keys, or null
+	 * @param out output buffer, or null
+	 * @return the container. Its data is the output buffer, of which only the
+	 * first {@link #length} bytes are valid.
+	 * @throws IOException
+	 */
+	public static Container decompress(ByteBuffer buffer, int offset, int length, int[] keys, byte[] out) throws IOException
+	{
+		return decompress(buffer, offset, length, keys, out, false);
+	}
+
+	private static Container decompress(ByteBuffer buffer, int offset, int length, int[] keys, byte[] out, boolean exact) throws IOException
+	{
+		ByteBuffer buf = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		int end = offset + length;
+
+		int compression = buf.get(offset) & 0xFF;
+		int compressedLength = buf.getInt(offset + 1);
 		if (compressedLength < 0 || compressedLength > 1000000)
 		{
 			throw new RuntimeException("Invalid data");
 		}
 
-		Crc32 crc32 = new Crc32();
-		crc32.update(b, 0, 5); // compression + length
-
-		byte[] data;
-		int revision = -1;
+		int dataOffset = offset + 5; // compression + length
+		int encryptedLength;
 		switch (compression)
 		{
 			case CompressionType.NONE:
-			{
-				byte[] encryptedData = new byte[compressedLength];
-				stream.readBytes(encryptedData, 0, compressedLength);
-
-				crc32.update(encryptedData, 0, compressedLength);
-				byte[] decryptedData = decrypt(encryptedData, encryptedData.length, keys);
-
-				if (stream.remaining() >= 2)
-				{
-					revision = stream.readUnsignedShort();
-					assert revision != -1;
-				}
-
-				data = decryptedData;
-
+				encryptedLength = compressedLength;
 				break;
-			}
 			case CompressionType.BZ2:
-			{
-				byte[] encryptedData = new byte[compressedLength + 4];
-				stream.readBytes(encryptedData);
+			case CompressionType.GZ:
+				encryptedLength = compressedLength + 4; // decompressed length + compressed data
+				break;
+			default:
+				throw new RuntimeException("Unknown decompression type");
+		}
 
-				crc32.update(encryptedData, 0, encryptedData.length);
-				byte[] decryptedData = decrypt(encryptedData, encryptedData.length, keys);
+		if (dataOffset + encryptedLength > end)
+		{
+			throw new IOException("Container data is truncated");
+		}
 
-				if (stream.remaining() >= 2)
-				{
-					revision = stream.readUnsignedShort();
-					assert revision != -1;
-				}
+		Crc32 crc32 = new Crc32();
+		crc32.update(buf, offset, 5 + encryptedLength);
 
-				stream = new InputStream(decryptedData);
+		int revision = -1;
+		if (end - (dataOffset + encryptedLength) >= 2)
+		{
+			revision = buf.getShort(dataOffset + encryptedLength) & 0xFFFF;
+			assert revision != -1;
+		}
 
-				int decompressedLength = stream.readInt();
-				data = BZip2.decompress(stream.getRemaining(), compressedLength);
+		if (keys != null)
+		{
+			Xtea xtea = new Xtea(keys);
+			xtea.decrypt(buf, dataOffset, encryptedLength);
+		}
 
-				if (data == null)
-				{
-					return null;
-				}
+		int decompressedLength;
+		if (compression == CompressionType.NONE)
+		{
+			decompressedLength = compressedLength;
+			out = outputBuffer(out, decompressedLength, exact);
 
-				assert data.length == decompressedLength;
+			buf.position(dataOffset);
+			buf.get(out, 0, decompressedLength);
+		}
+		else
+		{
+			decompressedLength = buf.getInt(dataOffset);
+			if (decompressedLength < 0 || decompressedLength > MAX_DECOMPRESSED_LENGTH)
+			{
+				throw new IOException("Invalid decompressed length " + decompressedLength);
+			}
 
-				break;
+			byte[] in;
+			int inOffset;
+			if (buf.hasArray())
+			{
+				in = buf.array();
+				inOffset = buf.arrayOffset() + dataOffset + 4;
 			}
-			case CompressionType.GZ:
+			else
 			{
-				byte[] encryptedData = new byte[compressedLength + 4];
-				stream.readBytes(encryptedData);
-
-				crc32.update(encryptedData, 0, encryptedData.length);
-				byte[] decryptedData = decrypt(encryptedData, encryptedData.length, keys);
-
-				if (stream.remaining() >= 2)
-				{
-					revision = stream.readUnsignedShort();
-					assert revision != -1;
-				}
+				in = pooledBuffer(SCRATCH_BUFFER, compressedLength);
+				inOffset = 0;
 
-				stream = new InputStream(decryptedData);
-
-				int decompressedLength = stream.readInt();
-				data = GZip.decompress(stream.getRemaining(), compressedLength);
-
-				if (data == null)
-				{
-					return null;
-				}
-
-				assert data.length == decompressedLength;
+				buf.position(dataOffset + 4);
+				buf.get(in, 0, compressedLength);
+			}
 
-				break;
+			out = outputBuffer(out, decompressedLength, exact);
+			if (compression == CompressionType.BZ2)
+			{
+				BZip2.decompress(in, inOffset, compressedLength, out, 0, decompressedLength);
+			}
+			else
+			{
+				GZip.decompress(in, inOffset, compressedLength, out, 0, decompressedLength);
 			}
-			default:
-				throw new RuntimeException("Unknown decompression type");
 		}
 
 		Container container = new Container(compression, revision);
-		container.data = data;
+		container.data = out;
+		container.length = decompressedLength;
 		container.crc = crc32.getHash();
 		return container;
 	}
 
-	private static byte[] decrypt(byte[] data, int length, int[] keys)
+	private static byte[] outputBuffer(byte[] out, int length, boolean exact)
 	{
-		if (keys == null)
+		if (exact)
 		{
-			return data;
+			return new byte[length];
 		}
 
-		Xtea xtea = new Xtea(keys);
-		return xtea.decrypt(data, length);
+		if (out != null && out.length >= length)
+		{
+			return out;
+		}
+
+		return pooledBuffer(OUTPUT_BUFFER, length);
+	}
+
+	private static byte[] pooledBuffer(ThreadLocal<byte[]> pool, int length)
+	{
+		if (length > MAX_POOLED_LENGTH)
+		{
+			return new byte[length];
+		}
+
+		byte[] b = pool.get();
+		if (b == null || b.length < length)
+		{
+			b = new byte[length];
+			pool.set(b);
+		}
+		return b;
 	}
 
 	private static byte[] encrypt(byte[] data, int length, int[] keys)
@@ -31,6 +31,7 @@ import net.runelite.cache.index.ArchiveData;
 import net.runelite.cache.index.FileData;
 import net.runelite.cache.index.IndexData;
 import net.runelite.cache.util.Djb2;
+import net.runelite.cache.util.IntHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +48,9 @@ public class Index
 	private int compression; // compression method of this index's data in 255
 
 	private final List<Archive> archives = new ArrayList<>();
+	private final IntHashMap<Archive> archivesById = new IntHashMap<>();
+	// built on first lookup by name, as name hashes are assigned after the archives are added
+	private volatile IntHashMap<Archive> archivesByName;
 
 	public Index(int id)
 	{
@@ -145,6 +149,11 @@ public class Index
 		this.compression = compression;
 	}
 
+	/**
+	 * Get the archives of this index. The list may be reordered, but archives
+	 * must be added and removed with {@link #addArchive(int)} and
+	 * {@link #removeArchive(Archive)}.
+	 */
 	public List<Archive> getArchives()
 	{
 		return archives;
@@ -154,32 +163,61 @@ public class Index
 	{
 		Archive archive = new Archive(this, id);
 		this.archives.add(archive);
+		archivesById.putIfAbsent(id, archive);
+		archivesByName = null;
 		return archive;
 	}
 
-	public Archive getArchive(int id)
+	public void removeArchive(Archive archive)
 	{
-		for (Archive a : archives)
+		if (!archives.removeIf(a -> a == archive))
+		{
+			return;
+		}
+
+		if (archivesById.get(archive.getArchiveId()) == archive)
 		{
-			if (a.getArchiveId() == id)
+			archivesById.remove(archive.getArchiveId());
+			// another archive may have the same id
+			for (Archive a : archives)
 			{
-				return a;
+				if (a.getArchiveId() == archive.getArchiveId())
+				{
+					archivesById.put(a.getArchiveId(), a);
+					break;
+				}
 			}
 		}
-		return null;
+		archivesByName = null;
+	}
+
+	public Archive getArchive(int id)
+	{
+		return archivesById.get(id);
 	}
 
 	public Archive findArchiveByName(String name)
 	{
 		int hash = Djb2.hash(name);
-		for (Archive a : archives)
+		IntHashMap<Archive> byName = archivesByName;
+		if (byName == null)
 		{
-			if (a.getNameHash() == hash)
+			byName = new IntHashMap<>(archives.size());
+			for (Archive a : archives)
 			{
-				return a;
+				byName.putIfAbsent(a.getNameHash(), a);
 			}
+			archivesByName = byName;
 		}
-		return null;
+		return byName.get(hash);
+	}
+
+	/**
+	 * Called when the name hash of an archive in this index changes
+	 */
+	void nameHashChanged()
+	{
+		archivesByName = null;
 	}
 
 	public IndexData toIndexData()
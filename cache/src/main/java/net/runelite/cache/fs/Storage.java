@@ -35,9 +35,50 @@ public interface Storage extends AutoCloseable
 
 	void load(Store store) throws IOException;
 
+	/**
+	 * @return true if the reference tables of indexes can be loaded one at a
+	 * time with {@link #loadIndex(Index)}
+	 */
+	default boolean canLoadIndex()
+	{
+		return false;
+	}
+
+	/**
+	 * Load the reference table of a single index of the store. Different
+	 * indexes may be loaded concurrently. Only supported if
+	 * {@link #canLoadIndex()} is true.
+	 *
+	 * @param index
+	 * @throws IOException
+	 */
+	default void loadIndex(Index index) throws IOException
+	{
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " can't load single indexes");
+	}
+
 	void save(Store store) throws IOException;
 
 	byte[] loadArchive(Archive archive) throws IOException;
 
 	void saveArchive(Archive archive, byte[] data) throws IOException;
+
+	default ArchiveFiles loadArchiveFiles(Archive archive) throws IOException
+	{
+		return loadArchiveFiles(archive, null);
+	}
+
+	/**
+	 * Load, decrypt, and decompress the files of an archive
+	 *
+	 * @param archive
+	 * @param keys xtea keys, or null
+	 * @return
+	 * @throws IOException
+	 */
+	default ArchiveFiles loadArchiveFiles(Archive archive, int[] keys) throws IOException
+	{
+		byte[] data = loadArchive(archive);
+		return archive.getFiles(data, keys);
+	}
 }
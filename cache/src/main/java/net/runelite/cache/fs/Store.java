@@ -28,9 +28,14 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import net.runelite.cache.IndexType;
 import net.runelite.cache.fs.jagex.DiskStorage;
 import org.slf4j.Logger;
@@ -42,6 +47,8 @@ public final class Store implements Closeable
 
 	private final Storage storage;
 	private final List<Index> indexes = new ArrayList<>();
+	// ids of indexes whose reference table has not been loaded yet, see loadLazy()
+	private final Set<Integer> unloadedIndexes = ConcurrentHashMap.newKeySet();
 
 	public Store(File folder) throws IOException
 	{
@@ -71,7 +78,7 @@ public final class Store implements Closeable
 	public int hashCode()
 	{
 		int hash = 5;
-		hash = 79 * hash + Objects.hashCode(this.indexes);
+		hash = 79 * hash + Objects.hashCode(this.getIndexes());
 		return hash;
 	}
 
@@ -87,7 +94,7 @@ public final class Store implements Closeable
 			return false;
 		}
 		final Store other = (Store) obj;
-		if (!Objects.equals(this.indexes, other.indexes))
+		if (!Objects.equals(this.getIndexes(), other.getIndexes()))
 		{
 			return false;
 		}
@@ -114,13 +121,123 @@ public final class Store implements Closeable
 	{
 		assert indexes.contains(index);
 		indexes.remove(index);
+		unloadedIndexes.remove(index.getId());
 	}
 
 	public void load() throws IOException
 	{
+		unloadedIndexes.clear();
 		storage.load(this);
 	}
 
+	/**
+	 * Load the store lazily. The reference table of each index is only
+	 * loaded the first time the index is looked up. If the storage can't
+	 * load single indexes, the whole store is loaded now.
+	 *
+	 * @throws IOException
+	 */
+	public void loadLazy() throws IOException
+	{
+		if (!storage.canLoadIndex())
+		{
+			load();
+			return;
+		}
+
+		for (Index index : indexes)
+		{
+			unloadedIndexes.add(index.getId());
+		}
+	}
+
+	/**
+	 * Load the reference tables of all indexes in parallel on the common
+	 * fork-join pool
+	 *
+	 * @throws IOException
+	 */
+	public void loadParallel() throws IOException
+	{
+		loadParallel(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Load the reference tables of all indexes in parallel. If the storage
+	 * can't load single indexes, the store is loaded serially.
+	 *
+	 * @param pool pool to load the indexes on
+	 * @throws IOException
+	 */
+	public void loadParallel(ForkJoinPool pool) throws IOException
+	{
+		if (!storage.canLoadIndex())
+		{
+			load();
+			return;
+		}
+
+		unloadedIndexes.clear();
+
+		try
+		{
+			pool.submit(() -> indexes.parallelStream().forEach(index ->
+			{
+				try
+				{
+					storage.loadIndex(index);
+				}
+				catch (IOException ex)
+				{
+					throw new UncheckedIOException(ex);
+				}
+			})).get();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted loading store", ex);
+		}
+		catch (ExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			throw new IOException("error loading store", cause);
+		}
+	}
+
+	private void ensureLoaded(Index index)
+	{
+		if (!unloadedIndexes.contains(index.getId()))
+		{
+			return;
+		}
+
+		synchronized (index)
+		{
+			if (!unloadedIndexes.contains(index.getId()))
+			{
+				return;
+			}
+
+			logger.debug("Lazily loading index {}", index.getId());
+
+			try
+			{
+				storage.loadIndex(index);
+			}
+			catch (IOException ex)
+			{
+				throw new UncheckedIOException("unable to load index " + index.getId(), ex);
+			}
+
+			unloadedIndexes.remove(index.getId());
+		}
+	}
+
 	public void save() throws IOException
 	{
 		storage.save(this);
@@ -128,6 +245,10 @@ public final class Store implements Closeable
 
 	public List<Index> getIndexes()
 	{
+		for (Index index : indexes)
+		{
+			ensureLoaded(index);
+		}
 		return indexes;
 	}
 
@@ -142,6 +263,7 @@ public final class Store implements Closeable
 		{
 			if (i.getId() == id)
 			{
+				ensureLoaded(i);
 				return i;
 			}
 		}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import com.google.common.primitives.Ints;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import net.runelite.cache.fs.ArchiveVerification.Status;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.util.Crc32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies the integrity of every archive of a store, checking that each
+ * archive can be read and that its container crc and revision match the
+ * reference table of its index. Archives are verified in parallel.
+ */
+public class StoreVerifier
+{
+	private static final Logger logger = LoggerFactory.getLogger(StoreVerifier.class);
+
+	private final Store store;
+	private final ForkJoinPool pool;
+
+	public StoreVerifier(Store store)
+	{
+		this(store, ForkJoinPool.commonPool());
+	}
+
+	public StoreVerifier(Store store, ForkJoinPool pool)
+	{
+		this.store = store;
+		this.pool = pool;
+	}
+
+	public VerificationReport verify() throws IOException
+	{
+		List<Archive> archives = new ArrayList<>();
+		for (Index index : store.getIndexes())
+		{
+			archives.addAll(index.getArchives());
+		}
+
+		List<ArchiveVerification> results;
+		try
+		{
+			results = pool.submit(() -> archives.parallelStream()
+				.map(this::verifyUnchecked)
+				.collect(Collectors.toList()))
+				.get();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted verifying store", ex);
+		}
+		catch (ExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			throw new IOException("error verifying store", cause);
+		}
+
+		VerificationReport report = new VerificationReport();
+		report.setIndexes(store.getIndexes().size());
+		report.setArchives(archives.size());
+
+		for (ArchiveVerification result : results)
+		{
+			report.getCounts().merge(result.getStatus(), 1, Integer::sum);
+
+			if (result.getStatus() == Status.REVISION_MISMATCH)
+			{
+				report.getWarnings().add(result);
+			}
+			else if (result.getStatus() != Status.OK)
+			{
+				report.getFailures().add(result);
+			}
+		}
+
+		Comparator<ArchiveVerification> order = Comparator.comparing(ArchiveVerification::getIndexId)
+			.thenComparing(ArchiveVerification::getArchiveId);
+		report.getFailures().sort(order);
+		report.getWarnings().sort(order);
+
+		logger.debug("Verified {} archives of {} indexes, {} failures, {} warnings",
+			report.getArchives(), report.getIndexes(), report.getFailures().size(), report.getWarnings().size());
+
+		return report;
+	}
+
+	private ArchiveVerification verifyUnchecked(Archive archive)
+	{
+		try
+		{
+			return verify(archive);
+		}
+		catch (IOException ex)
+		{
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	public ArchiveVerification verify(Archive archive) throws IOException
+	{
+		int indexId = archive.getIndex().getId();
+		int archiveId = archive.getArchiveId();
+		int expectedCrc = archive.getCrc();
+		int expectedRevision = archive.getRevision();
+
+		byte[] data = store.getStorage().loadArchive(archive);
+		if (data == null)
+		{
+			return new ArchiveVerification(indexId, archiveId, Status.MISSING,
+				expectedCrc, 0, expectedRevision, -1, "unable to read archive");
+		}
+
+		if (data.length < 5)
+		{
+			return new ArchiveVerification(indexId, archiveId, Status.CORRUPT,
+				expectedCrc, 0, expectedRevision, -1, "container header is truncated");
+		}
+
+		int compression = data[0] & 0xFF;
+		int compressedLength = Ints.fromBytes(data[1], data[2], data[3], data[4]);
+
+		if (compression != CompressionType.NONE && compression != CompressionType.BZ2 && compression != CompressionType.GZ)
+		{
+			return new ArchiveVerification(indexId, archiveId, Status.CORRUPT,
+				expectedCrc, 0, expectedRevision, -1, "unknown compression type " + compression);
+		}
+
+		// don't crc the appended revision, if it is there
+		long length = 1 // compression type
+			+ 4 // compressed length
+			+ (long) compressedLength
+			+ (compression != CompressionType.NONE ? 4 : 0); // decompressed length
+
+		if (compressedLength < 0 || length > data.length)
+		{
+			return new ArchiveVerification(indexId, archiveId, Status.CORRUPT,
+				expectedCrc, 0, expectedRevision, -1,
+				"container length " + length + " exceeds archive length " + data.length);
+		}
+
+		Crc32 crc32 = new Crc32();
+		crc32.update(data, 0, (int) length);
+		int crc = crc32.getHash();
+
+		int revision = -1;
+		if (data.length - length >= 2)
+		{
+			revision = ((data[(int) length] & 0xFF) << 8) | (data[(int) length + 1] & 0xFF);
+		}
+
+		if (crc != expectedCrc)
+		{
+			return new ArchiveVerification(indexId, archiveId, Status.CRC_MISMATCH,
+				expectedCrc, crc, expectedRevision, revision, null);
+		}
+
+		if (revision != -1 && revision != (expectedRevision & 0xFFFF))
+		{
+			return new ArchiveVerification(indexId, archiveId, Status.REVISION_MISMATCH,
+				expectedCrc, crc, expectedRevision, revision, null);
+		}
+
+		return new ArchiveVerification(indexId, archiveId, Status.OK,
+			expectedCrc, crc, expectedRevision, revision, null);
+	}
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.flat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.FileData;
+
+/**
+ * A Storage that stores the cache as one binary file per index. Each file
+ * holds the index's reference table followed by the archive contents, with
+ * the offset of each archive's contents in the reference table. The files are
+ * memory mapped, so loading only parses the reference tables, and archive
+ * contents are read directly from the mapping on demand.
+ * <p>
+ * File layout, big endian:
+ * <pre>
+ * int magic, int version
+ * int protocol, int revision, int compression, int crc, byte named
+ * int archive count
+ * for each archive:
+ *   int id, int name hash, int revision, int crc, int compression
+ *   byte hash length, hash
+ *   int file count, for each file: int id, int name hash
+ *   long contents offset, int contents length (-1 if there are no contents)
+ * archive contents
+ * </pre>
+ */
+public class BinaryFlatStorage implements Storage
+{
+	protected static final String EXTENSION = ".flatbin";
+
+	private static final int MAGIC = 0x464c4154; // FLAT
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 4 + 4 + 4 * 4 + 1 + 4;
+	private static final int ARCHIVE_SIZE = 5 * 4 + 1 + 4 + 8 + 4;
+	private static final int FILE_SIZE = 4 + 4;
+
+	/**
+	 * The mapped file of an index, with the contents offsets of its archives
+	 * ordered by archive id
+	 */
+	private static class IndexContents
+	{
+		private final ByteBuffer buffer;
+		private final int[] archiveIds;
+		private final int[] offsets;
+		private final int[] lengths;
+
+		private IndexContents(ByteBuffer buffer, int archives)
+		{
+			this.buffer = buffer;
+			this.archiveIds = new int[archives];
+			this.offsets = new int[archives];
+			this.lengths = new int[archives];
+		}
+
+		private byte[] get(int archiveId)
+		{
+			int idx = Arrays.binarySearch(archiveIds, archiveId);
+			if (idx < 0 || lengths[idx] == -1)
+			{
+				return null;
+			}
+
+			byte[] contents = new byte[lengths[idx]];
+			ByteBuffer b = buffer.duplicate();
+			b.position(offsets[idx]);
+			b.get(contents);
+			return contents;
+		}
+	}
+
+	private final File directory;
+	private final Map<Integer, IndexContents> contents = new ConcurrentHashMap<>();
+	// archives saved since the index was loaded
+	private final Map<Long, byte[]> saved = new ConcurrentHashMap<>();
+
+	public BinaryFlatStorage(File directory)
+	{
+		this.directory = directory;
+	}
+
+	@Override
+	public void init(Store store) throws IOException
+	{
+		String[] idxs = directory.list((dir, name) -> name.endsWith(EXTENSION));
+		for (String idx : idxs)
+		{
+			int id = Integer.parseInt(idx.substring(0, idx.length() - EXTENSION.length()));
+			store.addIndex(id);
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		contents.clear();
+		saved.clear();
+	}
+
+	@Override
+	public void load(Store store) throws IOException
+	{
+		for (Index idx : store.getIndexes())
+		{
+			loadIndex(idx);
+		}
+	}
+
+	@Override
+	public boolean canLoadIndex()
+	{
+		return true;
+	}
+
+	@Override
+	public void loadIndex(Index idx) throws IOException
+	{
+		File file = new File(directory, idx.getId() + EXTENSION);
+		ByteBuffer buffer = map(file);
+
+		try
+		{
+			if (buffer.getInt() != MAGIC)
+			{
+				throw new IOException("not a binary flatcache");
+			}
+
+			int version = buffer.getInt();
+			if (version != VERSION)
+			{
+				throw new IOException("unsupported binary flatcache version " + version);
+			}
+
+			idx.setProtocol(buffer.getInt());
+			idx.setRevision(buffer.getInt());
+			idx.setCompression(buffer.getInt());
+			idx.setCrc(buffer.getInt());
+			idx.setNamed(buffer.get() != 0);
+
+			int archives = buffer.getInt();
+			IndexContents indexContents = new IndexContents(buffer, archives);
+
+			for (int i = 0; i < archives; ++i)
+			{
+				Archive archive = idx.addArchive(buffer.getInt());
+				archive.setNameHash(buffer.getInt());
+				archive.setRevision(buffer.getInt());
+				archive.setCrc(buffer.getInt());
+				archive.setCompression(buffer.getInt());
+
+				int hashLength = buffer.get() & 0xFF;
+				if (hashLength > 0)
+				{
+					byte[] hash = new byte[hashLength];
+					buffer.get(hash);
+					archive.setHash(hash);
+				}
+
+				FileData[] fileData = new FileData[buffer.getInt()];
+				for (int j = 0; j < fileData.length; ++j)
+				{
+					FileData fd = fileData[j] = new FileData();
+					fd.setId(buffer.getInt());
+					fd.setNameHash(buffer.getInt());
+				}
+				archive.setFileData(fileData);
+
+				indexContents.archiveIds[i] = archive.getArchiveId();
+				indexContents.offsets[i] = (int) buffer.getLong();
+				indexContents.lengths[i] = buffer.getInt();
+
+				if (i > 0 && indexContents.archiveIds[i] <= indexContents.archiveIds[i - 1])
+				{
+					throw new IOException("archives are out of order");
+				}
+			}
+
+			contents.put(idx.getId(), indexContents);
+		}
+		catch (RuntimeException ex)
+		{
+			throw new IOException("error reading binary flatcache " + file, ex);
+		}
+	}
+
+	private static ByteBuffer map(File file) throws IOException
+	{
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel())
+		{
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				throw new IOException("binary flatcache " + file + " is too large to map");
+			}
+
+			// the mapping remains valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+			return buffer;
+		}
+	}
+
+	@Override
+	public void save(Store store) throws IOException
+	{
+		store.getIndexes().sort(Comparator.comparing(Index::getId));
+		for (Index idx : store.getIndexes())
+		{
+			saveIndex(store, idx);
+		}
+	}
+
+	private void saveIndex(Store store, Index idx) throws IOException
+	{
+		idx.getArchives().sort(Comparator.comparing(Archive::getArchiveId));
+		List<Archive> archives = new ArrayList<>(idx.getArchives());
+
+		int headerSize = HEADER_SIZE;
+		for (Archive archive : archives)
+		{
+			headerSize += ARCHIVE_SIZE
+				+ (archive.getHash() != null ? archive.getHash().length : 0)
+				+ archive.getFileData().length * FILE_SIZE;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(headerSize);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(idx.getProtocol());
+		header.putInt(idx.getRevision());
+		header.putInt(idx.getCompression());
+		header.putInt(idx.getCrc());
+		header.put((byte) (idx.isNamed() ? 1 : 0));
+		header.putInt(archives.size());
+
+		File file = new File(directory, idx.getId() + EXTENSION);
+		File tmp = new File(directory, idx.getId() + EXTENSION + ".tmp");
+
+		try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+			FileChannel channel = raf.getChannel())
+		{
+			raf.setLength(0L);
+
+			// write the contents after the reference table, recording where each went
+			long offset = headerSize;
+			for (Archive archive : archives)
+			{
+				header.putInt(archive.getArchiveId());
+				header.putInt(archive.getNameHash());
+				header.putInt(archive.getRevision());
+				header.putInt(archive.getCrc());
+				header.putInt(archive.getCompression());
+
+				byte[] hash = archive.getHash();
+				header.put((byte) (hash != null ? hash.length : 0));
+				if (hash != null)
+				{
+					header.put(hash);
+				}
+
+				header.putInt(archive.getFileData().length);
+				for (FileData fd : archive.getFileData())
+				{
+					header.putInt(fd.getId());
+					header.putInt(fd.getNameHash());
+				}
+
+				byte[] data = store.getStorage().loadArchive(archive);
+				if (data == null)
+				{
+					header.putLong(0L);
+					header.putInt(-1);
+					continue;
+				}
+
+				header.putLong(offset);
+				header.putInt(data.length);
+
+				ByteBuffer b = ByteBuffer.wrap(data);
+				while (b.hasRemaining())
+				{
+					offset += channel.write(b, offset);
+				}
+			}
+
+			header.flip();
+			long position = 0L;
+			while (header.hasRemaining())
+			{
+				position += channel.write(header, position);
+			}
+		}
+
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		if (store.getStorage() == this)
+		{
+			// the saved archives are now in the new file
+			contents.remove(idx.getId());
+			saved.keySet().removeIf(key -> (int) (key >>> 32) == idx.getId());
+			remap(idx);
+		}
+	}
+
+	/**
+	 * Update the contents offsets of an index after it has been rewritten
+	 */
+	private void remap(Index idx) throws IOException
+	{
+		ByteBuffer buffer = map(new File(directory, idx.getId() + EXTENSION));
+		buffer.position(HEADER_SIZE - 4);
+		int archives = buffer.getInt();
+
+		IndexContents indexContents = new IndexContents(buffer, archives);
+		for (int i = 0; i < archives; ++i)
+		{
+			indexContents.archiveIds[i] = buffer.getInt();
+			buffer.position(buffer.position() + 4 * 4);
+			int hashLength = buffer.get() & 0xFF;
+			buffer.position(buffer.position() + hashLength);
+			int files = buffer.getInt();
+			buffer.position(buffer.position() + files * FILE_SIZE);
+			indexContents.offsets[i] = (int) buffer.getLong();
+			indexContents.lengths[i] = buffer.getInt();
+		}
+
+		contents.put(idx.getId(), indexContents);
+	}
+
+	@Override
+	public byte[] loadArchive(Archive archive) throws IOException
+	{
+		int indexId = archive.getIndex().getId();
+		byte[] data = saved.get((long) indexId << 32 | archive.getArchiveId());
+		if (data != null)
+		{
+			return data;
+		}
+
+		IndexContents indexContents = contents.get(indexId);
+		if (indexContents == null)
+		{
+			return null;
+		}
+
+		return indexContents.get(archive.getArchiveId());
+	}
+
+	@Override
+	public void saveArchive(Archive archive, byte[] bytes) throws IOException
+	{
+		saved.put((long) archive.getIndex().getId() << 32 | archive.getArchiveId(), bytes);
+	}
+}
@@ -36,9 +36,9 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Storage;
@@ -54,7 +54,7 @@ public class FlatStorage implements Storage
 	protected static final String EXTENSION = ".flatcache";
 
 	private final File directory;
-	private final Map<Long, byte[]> data = new HashMap<>();
+	private final Map<Long, byte[]> data = new ConcurrentHashMap<>();
 
 	public FlatStorage(File directory) throws IOException
 	{
@@ -102,107 +102,119 @@ public class FlatStorage implements Storage
 	{
 		for (Index idx : store.getIndexes())
 		{
-			String file = idx.getId() + EXTENSION;
-			try (BufferedReader br = new BufferedReader(new InputStreamReader(openReader(file))))
+			loadIndex(idx);
+		}
+	}
+
+	@Override
+	public boolean canLoadIndex()
+	{
+		return true;
+	}
+
+	@Override
+	public void loadIndex(Index idx) throws IOException
+	{
+		String file = idx.getId() + EXTENSION;
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(openReader(file))))
+		{
+			int lineNo = 0;
+			Archive archive = null;
+			List<FileData> fileData = null;
+			for (String line = br.readLine(); line != null; line = br.readLine())
 			{
-				int lineNo = 0;
-				Archive archive = null;
-				List<FileData> fileData = null;
-				for (String line = br.readLine(); line != null; line = br.readLine())
+				lineNo++;
+
+				try
 				{
-					lineNo++;
+					int lidx = line.indexOf('=');
+					String key = line.substring(0, lidx);
+					String value = line.substring(lidx + 1);
 
-					try
+					if ("file".equals(key))
 					{
-						int lidx = line.indexOf('=');
-						String key = line.substring(0, lidx);
-						String value = line.substring(lidx + 1);
-
-						if ("file".equals(key))
+						if (fileData == null)
 						{
-							if (fileData == null)
-							{
-								fileData = new ArrayList<>();
-							}
-
-							int vidx = value.indexOf('=');
-							FileData fd = new FileData();
-							fd.setId(Integer.parseInt(value.substring(0, vidx)));
-							fd.setNameHash(Integer.parseInt(value.substring(vidx + 1)));
-							fileData.add(fd);
-							continue;
-						}
-						else if (fileData != null)
-						{
-							archive.setFileData(fileData.toArray(new FileData[0]));
-							fileData = null;
+							fileData = new ArrayList<>();
 						}
 
-						if ("id".equals(key))
-						{
-							archive = idx.addArchive(Integer.parseInt(value));
-							continue;
-						}
+						int vidx = value.indexOf('=');
+						FileData fd = new FileData();
+						fd.setId(Integer.parseInt(value.substring(0, vidx)));
+						fd.setNameHash(Integer.parseInt(value.substring(vidx + 1)));
+						fileData.add(fd);
+						continue;
+					}
+					else if (fileData != null)
+					{
+						archive.setFileData(fileData.toArray(new FileData[0]));
+						fileData = null;
+					}
 
-						if (archive == null)
-						{
-							switch (key)
-							{
-								case "protocol":
-									idx.setProtocol(Integer.parseInt(value));
-									continue;
-								case "revision":
-									idx.setRevision(Integer.parseInt(value));
-									continue;
-								case "compression":
-									idx.setCompression(Integer.parseInt(value));
-									continue;
-								case "crc":
-									idx.setCrc(Integer.parseInt(value));
-									continue;
-								case "named":
-									idx.setNamed(Boolean.parseBoolean(value));
-									continue;
-							}
-						}
-						else
+					if ("id".equals(key))
+					{
+						archive = idx.addArchive(Integer.parseInt(value));
+						continue;
+					}
+
+					if (archive == null)
+					{
+						switch (key)
 						{
-							switch (key)
-							{
-								case "namehash":
-									archive.setNameHash(Integer.parseInt(value));
-									continue;
-								case "revision":
-									archive.setRevision(Integer.parseInt(value));
-									continue;
-								case "crc":
-									archive.setCrc(Integer.parseInt(value));
-									continue;
-								case "hash":
-									archive.setHash(Base64.getDecoder().decode(value));
-									continue;
-								case "compression":
-									archive.setCompression(Integer.parseInt(value));
-									continue;
-								case "contents":
-									data.put((long) idx.getId() << 32 | archive.getArchiveId(), Base64.getDecoder().decode(value));
-									continue;
-							}
+							case "protocol":
+								idx.setProtocol(Integer.parseInt(value));
+								continue;
+							case "revision":
+								idx.setRevision(Integer.parseInt(value));
+								continue;
+							case "compression":
+								idx.setCompression(Integer.parseInt(value));
+								continue;
+							case "crc":
+								idx.setCrc(Integer.parseInt(value));
+								continue;
+							case "named":
+								idx.setNamed(Boolean.parseBoolean(value));
+								continue;
 						}
-						throw new IOException("unknown key: \"" + key + "\"");
 					}
-					catch (Exception e)
+					else
 					{
-						throw new IOException("error reading flatcache at " + file + ":" + lineNo, e);
+						switch (key)
+						{
+							case "namehash":
+								archive.setNameHash(Integer.parseInt(value));
+								continue;
+							case "revision":
+								archive.setRevision(Integer.parseInt(value));
+								continue;
+							case "crc":
+								archive.setCrc(Integer.parseInt(value));
+								continue;
+							case "hash":
+								archive.setHash(Base64.getDecoder().decode(value));
+								continue;
+							case "compression":
+								archive.setCompression(Integer.parseInt(value));
+								continue;
+							case "contents":
+								data.put((long) idx.getId() << 32 | archive.getArchiveId(), Base64.getDecoder().decode(value));
+								continue;
+						}
 					}
+					throw new IOException("unknown key: \"" + key + "\"");
 				}
-
-				if (fileData != null)
+				catch (Exception e)
 				{
-					archive.setFileData(fileData.toArray(new FileData[0]));
-					fileData = null;
+					throw new IOException("error reading flatcache at " + file + ":" + lineNo, e);
 				}
 			}
+
+			if (fileData != null)
+			{
+				archive.setFileData(fileData.toArray(new FileData[0]));
+				fileData = null;
+			}
 		}
 	}
 
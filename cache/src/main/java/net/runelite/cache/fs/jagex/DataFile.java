@@ -30,9 +30,17 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * The sector data file of a cache. Reads do not touch the file pointer, they
+ * are either positional reads on the file channel or, if memory mapped, reads
+ * from a mapping of the file, so any number of threads may read concurrently.
+ * Writes are serialized.
+ */
 public class DataFile implements Closeable
 {
 	private static final Logger logger = LoggerFactory.getLogger(DataFile.class);
@@ -40,23 +48,47 @@ public class DataFile implements Closeable
 	private static final int SECTOR_SIZE = 520;
 
 	private final RandomAccessFile dat;
+	private final FileChannel channel;
+	private final boolean memoryMapped;
+	private volatile MappedByteBuffer mappedBuffer;
 
 	public DataFile(File file) throws FileNotFoundException
+	{
+		this(file, false);
+	}
+
+	/**
+	 * @param file data file
+	 * @param memoryMapped whether to serve reads from a memory mapping of
+	 * the file instead of positional reads
+	 * @throws FileNotFoundException
+	 */
+	public DataFile(File file, boolean memoryMapped) throws FileNotFoundException
 	{
 		this.dat = new RandomAccessFile(file, "rw");
+		this.channel = dat.getChannel();
+		this.memoryMapped = memoryMapped;
 	}
 
 	@Override
 	public void close() throws IOException
 	{
+		mappedBuffer = null;
 		dat.close();
 	}
 
-	public void clear() throws IOException
+	public synchronized void clear() throws IOException
 	{
+		// the mapping must be dropped before truncating the file
+		mappedBuffer = null;
 		dat.setLength(0L);
 	}
 
+	public boolean isMemoryMapped()
+	{
+		return memoryMapped;
+	}
+
 	/**
 	 *
 	 * @param indexId expected index of archive of contents being read
@@ -68,14 +100,15 @@ public class DataFile implements Closeable
 	 */
 	public byte[] read(int indexId, int archiveId, int sector, int size) throws IOException
 	{
-		if (sector <= 0L || dat.length() / SECTOR_SIZE < (long) sector)
+		long datLength = channel.size();
+		if (sector <= 0L || datLength / SECTOR_SIZE < (long) sector)
 		{
-			logger.warn("bad read, dat length {}, requested sector {}", dat.length(), sector);
+			logger.warn("bad read, dat length {}, requested sector {}", datLength, sector);
 			return null;
 		}
 
 		byte[] readBuffer = new byte[SECTOR_SIZE];
-		ByteBuffer buffer = ByteBuffer.allocate(size);
+		byte[] buffer = new byte[size];
 
 		for (int part = 0, readBytesCount = 0, nextSector;
 			size > readBytesCount;
@@ -87,7 +120,7 @@ public class DataFile implements Closeable
 				return null;
 			}
 
-			dat.seek(SECTOR_SIZE * sector);
+			long position = (long) SECTOR_SIZE * sector;
 
 			int dataBlockSize = size - readBytesCount;
 			byte headerSize;
@@ -102,7 +135,7 @@ public class DataFile implements Closeable
 					dataBlockSize = SECTOR_SIZE - headerSize;
 				}
 
-				int i = dat.read(readBuffer, 0, headerSize + dataBlockSize);
+				int i = readSector(position, readBuffer, headerSize + dataBlockSize);
 				if (i != headerSize + dataBlockSize)
 				{
 					logger.warn("Short read when reading file data for {}/{}", indexId, archiveId);
@@ -127,7 +160,7 @@ public class DataFile implements Closeable
 					dataBlockSize = SECTOR_SIZE - headerSize;
 				}
 
-				int i = dat.read(readBuffer, 0, headerSize + dataBlockSize);
+				int i = readSector(position, readBuffer, headerSize + dataBlockSize);
 				if (i != headerSize + dataBlockSize)
 				{
 					logger.warn("short read");
@@ -153,23 +186,107 @@ public class DataFile implements Closeable
 				return null;
 			}
 
-			if (nextSector < 0 || dat.length() / SECTOR_SIZE < (long) nextSector)
+			if (nextSector < 0 || datLength / SECTOR_SIZE < (long) nextSector)
 			{
 				logger.warn("Invalid next sector");
 				return null;
 			}
 
-			buffer.put(readBuffer, headerSize, dataBlockSize);
+			System.arraycopy(readBuffer, headerSize, buffer, readBytesCount, dataBlockSize);
 			readBytesCount += dataBlockSize;
 
 			++part;
 		}
 
-		buffer.flip();
-		return buffer.array();
+		return buffer;
+	}
+
+	/**
+	 * Read up to {@code length} bytes at {@code position} into {@code buffer}
+	 * without moving the file pointer
+	 *
+	 * @param position file position
+	 * @param buffer destination
+	 * @param length number of bytes to read
+	 * @return number of bytes read
+	 * @throws IOException
+	 */
+	private int readSector(long position, byte[] buffer, int length) throws IOException
+	{
+		if (memoryMapped)
+		{
+			MappedByteBuffer map = map(position + length);
+			if (map != null)
+			{
+				ByteBuffer view = map.duplicate();
+				if (position >= view.limit())
+				{
+					return 0;
+				}
+
+				int read = (int) Math.min(length, view.limit() - position);
+				view.position((int) position);
+				view.get(buffer, 0, read);
+				return read;
+			}
+		}
+
+		ByteBuffer dst = ByteBuffer.wrap(buffer, 0, length);
+		while (dst.hasRemaining())
+		{
+			int i = channel.read(dst, position + dst.position());
+			if (i == -1)
+			{
+				break;
+			}
+		}
+		return dst.position();
+	}
+
+	/**
+	 * Get a mapping of the data file covering at least {@code end} bytes,
+	 * remapping if the file has grown since it was last mapped.
+	 *
+	 * @param end
+	 * @return the mapping, or null if the file is too large to be mapped
+	 * @throws IOException
+	 */
+	private MappedByteBuffer map(long end) throws IOException
+	{
+		MappedByteBuffer map = mappedBuffer;
+		if (map != null && map.capacity() >= end)
+		{
+			return map;
+		}
+
+		synchronized (this)
+		{
+			map = mappedBuffer;
+			if (map != null && map.capacity() >= end)
+			{
+				return map;
+			}
+
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+			{
+				logger.debug("Data file too large to map ({} bytes), using positional reads", size);
+				return null;
+			}
+
+			if (size < end && map != null && map.capacity() == size)
+			{
+				// the file has not grown, this read is past the end
+				return map;
+			}
+
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+			mappedBuffer = map;
+			return map;
+		}
 	}
 
-	public DataFileWriteResult write(int indexId, int archiveId, byte[] compressedData) throws IOException
+	public synchronized DataFileWriteResult write(int indexId, int archiveId, byte[] compressedData) throws IOException
 	{
 		int sector;
 		int startSector;
@@ -45,8 +45,8 @@ public class DiskStorage implements Storage
 {
 	private static final Logger logger = LoggerFactory.getLogger(DiskStorage.class);
 
-	private static final String MAIN_FILE_CACHE_DAT = "main_file_cache.dat2";
-	private static final String MAIN_FILE_CACHE_IDX = "main_file_cache.idx";
+	static final String MAIN_FILE_CACHE_DAT = "main_file_cache.dat2";
+	static final String MAIN_FILE_CACHE_IDX = "main_file_cache.idx";
 
 	private final File folder;
 
@@ -55,10 +55,21 @@ public class DiskStorage implements Storage
 	private final List<IndexFile> indexFiles = new ArrayList<>();
 
 	public DiskStorage(File folder) throws IOException
+	{
+		this(folder, false);
+	}
+
+	/**
+	 * @param folder cache folder
+	 * @param memoryMapped whether to memory map the data file for reading.
+	 * Reads are safe to do concurrently either way.
+	 * @throws IOException
+	 */
+	public DiskStorage(File folder, boolean memoryMapped) throws IOException
 	{
 		this.folder = folder;
 
-		this.data = new DataFile(new File(folder, MAIN_FILE_CACHE_DAT));
+		this.data = new DataFile(new File(folder, MAIN_FILE_CACHE_DAT), memoryMapped);
 		this.index255 = new IndexFile(255, new File(folder, MAIN_FILE_CACHE_IDX + "255"));
 	}
 
@@ -75,7 +86,7 @@ public class DiskStorage implements Storage
 	}
 
 	@Override
-	public void close() throws IOException
+	public synchronized void close() throws IOException
 	{
 		data.close();
 		index255.close();
@@ -85,7 +96,7 @@ public class DiskStorage implements Storage
 		}
 	}
 
-	private IndexFile getIndex(int i) throws FileNotFoundException
+	private synchronized IndexFile getIndex(int i) throws FileNotFoundException
 	{
 		for (IndexFile indexFile : indexFiles)
 		{
@@ -116,7 +127,14 @@ public class DiskStorage implements Storage
 		return indexData;
 	}
 
-	private void loadIndex(Index index) throws IOException
+	@Override
+	public boolean canLoadIndex()
+	{
+		return true;
+	}
+
+	@Override
+	public void loadIndex(Index index) throws IOException
 	{
 		logger.trace("Loading index {}", index.getId());
 
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compacts a disk cache. {@link DataFile} only ever appends sectors, so
+ * every archive that is rewritten leaves its old sectors behind. This
+ * rewrites every live sector chain contiguously, in index and archive order,
+ * into new data and index files which then replace the originals.
+ * <p>
+ * The cache must not be open while it is being compacted.
+ */
+public class DiskStorageCompactor
+{
+	private static final Logger logger = LoggerFactory.getLogger(DiskStorageCompactor.class);
+
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final String OLD_SUFFIX = ".old";
+
+	@Value
+	public static class CompactionResult
+	{
+		private final long oldSize;
+		private final long newSize;
+		private final int archives;
+		/**
+		 * archives which had an index entry, but whose sector chain could not be read
+		 */
+		private final int dropped;
+	}
+
+	private final File folder;
+
+	public DiskStorageCompactor(File folder)
+	{
+		this.folder = folder;
+	}
+
+	public CompactionResult compact() throws IOException
+	{
+		File datFile = new File(folder, DiskStorage.MAIN_FILE_CACHE_DAT);
+		long oldSize = datFile.length();
+
+		List<File> files = new ArrayList<>();
+		files.add(datFile);
+		int archives = 0;
+		int dropped = 0;
+
+		try (DataFile data = new DataFile(datFile);
+			IndexFile index255 = new IndexFile(255, new File(folder, DiskStorage.MAIN_FILE_CACHE_IDX + "255"));
+			DataFile newData = new DataFile(tmpFile(datFile)))
+		{
+			newData.clear();
+
+			// the reference tables go first, followed by each index in order
+			List<IndexFile> indexFiles = new ArrayList<>();
+			indexFiles.add(index255);
+			for (int i = 0; i < index255.getIndexCount(); ++i)
+			{
+				indexFiles.add(new IndexFile(i, new File(folder, DiskStorage.MAIN_FILE_CACHE_IDX + i)));
+			}
+
+			try
+			{
+				for (IndexFile indexFile : indexFiles)
+				{
+					File idxFile = new File(folder, DiskStorage.MAIN_FILE_CACHE_IDX + indexFile.getIndexFileId());
+					files.add(idxFile);
+
+					try (IndexFile newIndexFile = new IndexFile(indexFile.getIndexFileId(), tmpFile(idxFile)))
+					{
+						newIndexFile.clear();
+
+						for (int id = 0; id < indexFile.getIndexCount(); ++id)
+						{
+							IndexEntry entry = indexFile.read(id);
+							byte[] contents = entry != null
+								? data.read(indexFile.getIndexFileId(), id, entry.getSector(), entry.getLength())
+								: null;
+
+							if (contents == null)
+							{
+								if (entry != null)
+								{
+									logger.warn("Dropping unreadable archive {}/{}", indexFile.getIndexFileId(), id);
+									++dropped;
+								}
+
+								// keep the index file the same length
+								newIndexFile.write(new IndexEntry(newIndexFile, id, 0, 0));
+								continue;
+							}
+
+							DataFileWriteResult res = newData.write(indexFile.getIndexFileId(), id, contents);
+							newIndexFile.write(new IndexEntry(newIndexFile, id, res.sector, res.compressedLength));
+							++archives;
+						}
+					}
+				}
+			}
+			finally
+			{
+				// index255 is closed by the try-with-resources
+				for (IndexFile indexFile : indexFiles.subList(1, indexFiles.size()))
+				{
+					indexFile.close();
+				}
+			}
+		}
+		catch (IOException ex)
+		{
+			for (File file : files)
+			{
+				Files.deleteIfExists(tmpFile(file).toPath());
+			}
+			throw ex;
+		}
+
+		swap(files);
+
+		long newSize = datFile.length();
+		logger.info("Compacted {} archives, {} -> {} bytes, dropped {}", archives, oldSize, newSize, dropped);
+		return new CompactionResult(oldSize, newSize, archives, dropped);
+	}
+
+	/**
+	 * Move the compacted files into place. Each file is renamed atomically, and
+	 * if any rename fails the original files are restored.
+	 */
+	private static void swap(List<File> files) throws IOException
+	{
+		List<File> moved = new ArrayList<>();
+		try
+		{
+			for (File file : files)
+			{
+				Path path = file.toPath();
+				Files.move(path, oldFile(file).toPath(), StandardCopyOption.ATOMIC_MOVE);
+				moved.add(file);
+				Files.move(tmpFile(file).toPath(), path, StandardCopyOption.ATOMIC_MOVE);
+			}
+		}
+		catch (IOException ex)
+		{
+			logger.warn("Unable to swap in compacted cache, restoring original files", ex);
+			for (File file : moved)
+			{
+				Files.move(oldFile(file).toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			for (File file : files)
+			{
+				Files.deleteIfExists(tmpFile(file).toPath());
+			}
+			throw ex;
+		}
+
+		for (File file : files)
+		{
+			Files.delete(oldFile(file).toPath());
+		}
+	}
+
+	private static File tmpFile(File file)
+	{
+		return new File(file.getParentFile(), file.getName() + TMP_SUFFIX);
+	}
+
+	private static File oldFile(File file)
+	{
+		return new File(file.getParentFile(), file.getName() + OLD_SUFFIX);
+	}
+}
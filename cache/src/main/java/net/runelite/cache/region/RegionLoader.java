@@ -25,9 +25,14 @@
 package net.runelite.cache.region;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import net.runelite.cache.IndexType;
 import net.runelite.cache.definitions.LocationsDefinition;
 import net.runelite.cache.definitions.MapDefinition;
@@ -51,9 +56,9 @@ public class RegionLoader
 	private final Index index;
 	private final XteaKeyManager keyManager;
 
-	private final Map<Integer, Region> regions = new HashMap<>();
-	private Region lowestX = null, lowestY = null;
-	private Region highestX = null, highestY = null;
+	private final Map<Integer, Region> regions = new ConcurrentHashMap<>();
+	private volatile Region lowestX = null, lowestY = null;
+	private volatile Region highestX = null, highestY = null;
 
 	public RegionLoader(Store store)
 	{
@@ -70,11 +75,73 @@ public class RegionLoader
 			Region region = this.loadRegionFromArchive(i);
 			if (region != null)
 			{
-				regions.put(i, region);
+				addRegion(region);
 			}
 		}
 	}
 
+	public void loadRegionsParallel() throws IOException
+	{
+		loadRegionsParallel(ForkJoinPool.commonPool(), null);
+	}
+
+	/**
+	 * Load all regions in parallel. The bounds are updated as regions are
+	 * loaded, so {@link #calculateBounds()} need not be called afterwards.
+	 *
+	 * @param pool pool to load the regions on
+	 * @param callback called with each region once it is loaded, from the
+	 * thread which loaded it. May be null.
+	 * @throws IOException
+	 */
+	public void loadRegionsParallel(ForkJoinPool pool, Consumer<Region> callback) throws IOException
+	{
+		try
+		{
+			pool.submit(() -> IntStream.range(0, MAX_REGION).parallel().forEach(i ->
+			{
+				Region region;
+				try
+				{
+					region = loadRegionFromArchive(i);
+				}
+				catch (IOException ex)
+				{
+					throw new UncheckedIOException(ex);
+				}
+
+				if (region != null)
+				{
+					addRegion(region);
+					if (callback != null)
+					{
+						callback.accept(region);
+					}
+				}
+			})).get();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted loading regions", ex);
+		}
+		catch (ExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			throw new IOException("error loading regions", cause);
+		}
+	}
+
+	private void addRegion(Region region)
+	{
+		regions.put(region.getRegionID(), region);
+		updateBounds(region);
+	}
+
 	public Region loadRegionFromArchive(int i) throws IOException
 	{
 		int x = i >> 8;
@@ -120,25 +187,30 @@ public class RegionLoader
 	{
 		for (Region region : regions.values())
 		{
-			if (lowestX == null || region.getBaseX() < lowestX.getBaseX())
-			{
-				lowestX = region;
-			}
+			updateBounds(region);
+		}
+	}
 
-			if (highestX == null || region.getBaseX() > highestX.getBaseX())
-			{
-				highestX = region;
-			}
+	private synchronized void updateBounds(Region region)
+	{
+		if (lowestX == null || region.getBaseX() < lowestX.getBaseX())
+		{
+			lowestX = region;
+		}
 
-			if (lowestY == null || region.getBaseY() < lowestY.getBaseY())
-			{
-				lowestY = region;
-			}
+		if (highestX == null || region.getBaseX() > highestX.getBaseX())
+		{
+			highestX = region;
+		}
 
-			if (highestY == null || region.getBaseY() > highestY.getBaseY())
-			{
-				highestY = region;
-			}
+		if (lowestY == null || region.getBaseY() < lowestY.getBaseY())
+		{
+			lowestY = region;
+		}
+
+		if (highestY == null || region.getBaseY() > highestY.getBaseY())
+		{
+			highestY = region;
 		}
 	}
 
@@ -29,6 +29,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.util.Arrays;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
@@ -83,4 +84,31 @@ public class BZip2
 
 		return os.toByteArray();
 	}
+
+	/**
+	 * Decompress headerless bzip2 data directly into {@code out}
+	 *
+	 * @param in compressed data, without the bzip2 header
+	 * @param inOffset offset of the compressed data
+	 * @param inLen length of the compressed data
+	 * @param out output buffer
+	 * @param outOffset offset to decompress to
+	 * @param outLen expected decompressed length
+	 * @throws IOException if the data is corrupt or does not decompress
+	 * to exactly {@code outLen} bytes
+	 */
+	public static void decompress(byte[] in, int inOffset, int inLen, byte[] out, int outOffset, int outLen) throws IOException
+	{
+		InputStream data = new SequenceInputStream(new ByteArrayInputStream(BZIP_HEADER),
+			new ByteArrayInputStream(in, inOffset, inLen));
+
+		try (InputStream is = new BZip2CompressorInputStream(data))
+		{
+			int read = IOUtils.readFully(is, out, outOffset, outLen);
+			if (read != outLen)
+			{
+				throw new IOException("bzip2 data decompressed to " + read + " bytes, expected " + outLen);
+			}
+		}
+	}
 }
@@ -30,8 +30,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.DataFormatException;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 import org.apache.commons.compress.utils.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +42,14 @@ public class GZip
 {
 	private static final Logger logger = LoggerFactory.getLogger(GZip.class);
 
+	private static final int GZIP_MAGIC = 0x8b1f;
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
 	public static byte[] compress(byte[] bytes) throws IOException
 	{
 		InputStream is = new ByteArrayInputStream(bytes);
@@ -64,4 +74,92 @@ public class GZip
 
 		return os.toByteArray();
 	}
+
+	/**
+	 * Decompress gzip data directly into {@code out}, reusing a thread local
+	 * inflater. The gzip trailer is not verified.
+	 *
+	 * @param in gzip data
+	 * @param inOffset offset of the gzip data
+	 * @param inLen length of the gzip data
+	 * @param out output buffer
+	 * @param outOffset offset to decompress to
+	 * @param outLen expected decompressed length
+	 * @throws IOException if the data is corrupt or does not decompress
+	 * to exactly {@code outLen} bytes
+	 */
+	public static void decompress(byte[] in, int inOffset, int inLen, byte[] out, int outOffset, int outLen) throws IOException
+	{
+		int end = inOffset + inLen;
+		if (inLen < 10 || ((in[inOffset] & 0xFF) | (in[inOffset + 1] & 0xFF) << 8) != GZIP_MAGIC)
+		{
+			throw new IOException("Not in GZIP format");
+		}
+
+		if (in[inOffset + 2] != 8)
+		{
+			throw new IOException("Unsupported compression method");
+		}
+
+		int flags = in[inOffset + 3] & 0xFF;
+		int pos = inOffset + 10; // magic, method, flags, mtime, xfl, os
+
+		if ((flags & FEXTRA) != 0)
+		{
+			pos += 2 + ((in[pos] & 0xFF) | (in[pos + 1] & 0xFF) << 8);
+		}
+		if ((flags & FNAME) != 0)
+		{
+			pos = skipString(in, pos, end);
+		}
+		if ((flags & FCOMMENT) != 0)
+		{
+			pos = skipString(in, pos, end);
+		}
+		if ((flags & FHCRC) != 0)
+		{
+			pos += 2;
+		}
+
+		if (pos > end)
+		{
+			throw new IOException("Corrupt GZIP header");
+		}
+
+		Inflater inflater = INFLATER.get();
+		inflater.reset();
+		inflater.setInput(in, pos, end - pos);
+
+		try
+		{
+			int read = 0;
+			while (read < outLen)
+			{
+				int i = inflater.inflate(out, outOffset + read, outLen - read);
+				if (i == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+				{
+					break;
+				}
+				read += i;
+			}
+
+			if (read != outLen)
+			{
+				throw new IOException("gzip data decompressed to " + read + " bytes, expected " + outLen);
+			}
+		}
+		catch (DataFormatException ex)
+		{
+			throw new IOException(ex);
+		}
+	}
+
+	private static int skipString(byte[] in, int pos, int end)
+	{
+		while (pos < end && in[pos] != 0)
+		{
+			++pos;
+		}
+		return pos + 1; // nul terminator
+	}
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.util;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from primitive ints to objects, using linear
+ * probing. Null values are not permitted.
+ *
+ * @param <V> value type
+ */
+public class IntHashMap<V>
+{
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+	private int mask;
+
+	public IntHashMap()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public IntHashMap(int expectedSize)
+	{
+		// keep the load factor at or below 0.5
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int hash(int key)
+	{
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(int key)
+	{
+		for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask)
+		{
+			if (keys[i] == key)
+			{
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	public boolean containsKey(int key)
+	{
+		return get(key) != null;
+	}
+
+	/**
+	 * Associate a value with a key
+	 *
+	 * @return the previous value of the key, or null
+	 */
+	public V put(int key, V value)
+	{
+		return put(key, value, true);
+	}
+
+	/**
+	 * Associate a value with a key, unless the key already has a value
+	 *
+	 * @return the existing value of the key, or null
+	 */
+	public V putIfAbsent(int key, V value)
+	{
+		return put(key, value, false);
+	}
+
+	@SuppressWarnings("unchecked")
+	private V put(int key, V value, boolean replace)
+	{
+		if (value == null)
+		{
+			throw new NullPointerException();
+		}
+
+		int i = hash(key) & mask;
+		for (; values[i] != null; i = (i + 1) & mask)
+		{
+			if (keys[i] == key)
+			{
+				V old = (V) values[i];
+				if (replace)
+				{
+					values[i] = value;
+				}
+				return old;
+			}
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > keys.length)
+		{
+			resize(keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Remove a key
+	 *
+	 * @return the removed value, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key)
+	{
+		int i = hash(key) & mask;
+		for (; values[i] != null; i = (i + 1) & mask)
+		{
+			if (keys[i] == key)
+			{
+				break;
+			}
+		}
+
+		V old = (V) values[i];
+		if (old == null)
+		{
+			return null;
+		}
+
+		// shift back the following entries of the probe sequence to fill the gap
+		int gap = i;
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask)
+		{
+			int home = hash(keys[j]) & mask;
+			// move entry j to the gap if its home slot is not within (gap, j]
+			if (((j - home) & mask) >= ((j - gap) & mask))
+			{
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+
+		values[gap] = null;
+		--size;
+		return old;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void resize(int capacity)
+	{
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		keys = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+
+		for (int i = 0; i < oldKeys.length; ++i)
+		{
+			if (oldValues[i] != null)
+			{
+				int j = hash(oldKeys[i]) & mask;
+				while (values[j] != null)
+				{
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
@@ -26,6 +26,7 @@ package net.runelite.cache.util;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
 
 public class Xtea
 {
@@ -85,4 +86,32 @@ public class Xtea
 		out.writeBytes(buf);
 		return out.array();
 	}
+
+	/**
+	 * Decrypt {@code len} bytes of a big endian buffer in place, starting at
+	 * {@code offset}. The buffer's position and limit are not modified.
+	 *
+	 * @param buffer
+	 * @param offset
+	 * @param len
+	 */
+	public void decrypt(ByteBuffer buffer, int offset, int len)
+	{
+		int numBlocks = len / 8;
+		for (int block = 0; block < numBlocks; ++block)
+		{
+			int pos = offset + block * 8;
+			int v0 = buffer.getInt(pos);
+			int v1 = buffer.getInt(pos + 4);
+			int sum = GOLDEN_RATIO * ROUNDS;
+			for (int i = 0; i < ROUNDS; ++i)
+			{
+				v1 -= (((v0 << 4) ^ (v0 >>> 5)) + v0) ^ (sum + key[(sum >>> 11) & 3]);
+				sum -= GOLDEN_RATIO;
+				v0 -= (((v1 << 4) ^ (v1 >>> 5)) + v1) ^ (sum + key[sum & 3]);
+			}
+			buffer.putInt(pos, v0);
+			buffer.putInt(pos + 4, v1);
+		}
+	}
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Collections;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class MapTileGeneratorTest
+{
+	private static int region(int x, int y)
+	{
+		return x << 8 | y;
+	}
+
+	private static int tile(int x, int y)
+	{
+		return x << 16 | y;
+	}
+
+	@Test
+	public void testDirtyTiles()
+	{
+		Map<Integer, Long> previous = ImmutableMap.of(
+			region(50, 50), 1L,
+			region(52, 53), 2L,
+			region(40, 40), 3L
+		);
+		Map<Integer, Long> current = ImmutableMap.of(
+			region(50, 50), 1L, // unchanged
+			region(52, 53), 4L, // changed
+			region(60, 60), 5L // added
+		);
+
+		// 4x4 region tiles. 40,40 was removed. 52,53 affects 51-53,52-54, and 60,60 affects 59-61,59-61
+		assertEquals(ImmutableSet.of(
+			tile(9, 9), tile(9, 10), tile(10, 9), tile(10, 10),
+			tile(12, 13), tile(13, 13),
+			tile(14, 14), tile(14, 15), tile(15, 14), tile(15, 15)
+		), MapTileGenerator.dirtyTiles(previous, current, 4));
+	}
+
+	@Test
+	public void testNoChanges()
+	{
+		Map<Integer, Long> regions = ImmutableMap.of(region(50, 50), 1L);
+		assertEquals(Collections.emptySet(), MapTileGenerator.dirtyTiles(regions, regions, 8));
+	}
+}
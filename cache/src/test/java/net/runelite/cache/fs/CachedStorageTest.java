@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import java.io.IOException;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import net.runelite.cache.index.FileData;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CachedStorageTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testLoadArchiveFiles() throws IOException
+	{
+		CachedStorage storage = new CachedStorage(new DiskStorage(folder.newFolder()), 1024L * 1024L);
+		try (Store store = new Store(storage))
+		{
+			Index index = store.addIndex(0);
+			Archive archive = index.addArchive(0);
+			FileData fileData = new FileData();
+			archive.setFileData(new FileData[]{fileData});
+
+			save(storage, archive, "test");
+
+			ArchiveFiles files = storage.loadArchiveFiles(archive);
+			assertArrayEquals("test".getBytes(), files.findFile(0).getContents());
+			assertSame(files, storage.loadArchiveFiles(archive));
+			assertEquals(0.5, storage.getHitRate(), 0.0);
+			assertEquals(4L, storage.getResidentBytes());
+
+			// saving the archive changes its crc, so it must not be served from the cache
+			save(storage, archive, "test2");
+
+			ArchiveFiles files2 = storage.loadArchiveFiles(archive);
+			assertNotSame(files, files2);
+			assertArrayEquals("test2".getBytes(), files2.findFile(0).getContents());
+		}
+	}
+
+	private static void save(Storage storage, Archive archive, String contents) throws IOException
+	{
+		Container container = new Container(CompressionType.GZ, -1);
+		container.compress(contents.getBytes(), null);
+		storage.saveArchive(archive, container.data);
+	}
+}
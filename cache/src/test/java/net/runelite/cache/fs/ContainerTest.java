@@ -25,9 +25,15 @@
 package net.runelite.cache.fs;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
+import static net.runelite.cache.fs.jagex.CompressionType.BZ2;
 import static net.runelite.cache.fs.jagex.CompressionType.GZ;
+import static net.runelite.cache.fs.jagex.CompressionType.NONE;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import org.junit.Test;
 
 public class ContainerTest
@@ -52,4 +58,54 @@ public class ContainerTest
 		assertArrayEquals(data, container.data);
 	}
 
+	@Test
+	public void testDecompressIntoBuffer() throws IOException
+	{
+		int[] keys = new int[]
+		{
+			4, 8, 15, 16
+		};
+		Random random = new Random(42L);
+		byte[] data = new byte[1024];
+		random.nextBytes(data);
+
+		byte[] out = new byte[4096];
+		for (int compression : new int[]{NONE, BZ2, GZ})
+		{
+			Container container = new Container(compression, 42);
+			container.compress(data, keys);
+			byte[] compressedData = container.data;
+
+			Container expected = Container.decompress(compressedData, keys);
+
+			// offset the container within a larger direct buffer
+			ByteBuffer buffer = ByteBuffer.allocateDirect(compressedData.length + 3);
+			buffer.position(3);
+			buffer.put(compressedData);
+
+			container = Container.decompress(buffer, 3, compressedData.length, keys, out);
+			assertSame(out, container.data);
+			assertEquals(data.length, container.length);
+			assertArrayEquals(data, Arrays.copyOf(container.data, container.length));
+			assertEquals(expected.crc, container.crc);
+			assertEquals(42, container.revision);
+			assertEquals(compression, container.compression);
+
+			// too small an output buffer falls back to a reused thread local buffer
+			container = Container.decompress(ByteBuffer.wrap(compressedData.clone()), 0, compressedData.length, keys, new byte[1]);
+			assertArrayEquals(data, Arrays.copyOf(container.data, container.length));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testDecompressInvalidLength() throws IOException
+	{
+		Container container = new Container(GZ, -1);
+		container.compress(new byte[16], null);
+		byte[] compressedData = container.data;
+
+		// corrupt the decompressed length, as decrypting with the wrong keys would
+		ByteBuffer.wrap(compressedData).putInt(5, Integer.MAX_VALUE);
+		Container.decompress(compressedData, null);
+	}
 }
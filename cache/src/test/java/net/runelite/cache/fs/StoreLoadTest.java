@@ -47,6 +47,33 @@ public class StoreLoadTest
 		}
 	}
 
+	@Test
+	public void testLoadLazy() throws IOException
+	{
+		try (Store store = new Store(StoreLocation.LOCATION);
+			Store lazyStore = new Store(StoreLocation.LOCATION))
+		{
+			store.load();
+			lazyStore.loadLazy();
+
+			Assert.assertEquals(store.findIndex(2), lazyStore.findIndex(2));
+			Assert.assertEquals(store, lazyStore);
+		}
+	}
+
+	@Test
+	public void testLoadParallel() throws IOException
+	{
+		try (Store store = new Store(StoreLocation.LOCATION);
+			Store parallelStore = new Store(StoreLocation.LOCATION))
+		{
+			store.load();
+			parallelStore.loadParallel();
+
+			Assert.assertEquals(store, parallelStore);
+		}
+	}
+
 	@Test
 	public void testSave() throws IOException
 	{
@@ -27,7 +27,9 @@ package net.runelite.cache.fs;
 import java.io.File;
 import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.jagex.DiskStorage;
 import net.runelite.cache.index.FileData;
 import org.junit.Assert;
 import org.junit.Rule;
@@ -148,4 +150,58 @@ public class StoreTest
 			}
 		}
 	}
+
+	@Test
+	public void testLoadWithoutIndexLoading() throws IOException
+	{
+		File root = folder.newFolder();
+
+		try (Store store = new Store(root))
+		{
+			Index index = store.addIndex(0);
+			Archive archive = index.addArchive(0);
+			archive.setFileData(new FileData[]{new FileData()});
+			store.addIndex(1).addArchive(3).setFileData(new FileData[]{new FileData()});
+
+			store.save();
+
+			AtomicInteger loads = new AtomicInteger();
+
+			try (Store store2 = new Store(wholeStoreStorage(root, loads)))
+			{
+				store2.loadLazy();
+				Assert.assertEquals(store, store2);
+			}
+
+			try (Store store2 = new Store(wholeStoreStorage(root, loads)))
+			{
+				store2.loadParallel();
+				Assert.assertEquals(store, store2);
+			}
+
+			Assert.assertEquals(2, loads.get());
+		}
+	}
+
+	/**
+	 * A storage which can only load the whole store at once
+	 */
+	private static Storage wholeStoreStorage(File root, AtomicInteger loads) throws IOException
+	{
+		return new DiskStorage(root)
+		{
+			@Override
+			public void load(Store store) throws IOException
+			{
+				loads.incrementAndGet();
+				super.load(store);
+			}
+
+			@Override
+			public boolean canLoadIndex()
+			{
+				return false;
+			}
+		};
+	}
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import java.io.IOException;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.ArchiveVerification.Status;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import net.runelite.cache.index.FileData;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StoreVerifierTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testVerify() throws IOException
+	{
+		try (Store store = new Store(new DiskStorage(folder.newFolder())))
+		{
+			Index index = store.addIndex(0);
+			Archive good = addArchive(store, index, 0, 1);
+			Archive badCrc = addArchive(store, index, 1, 2);
+			Archive badRevision = addArchive(store, index, 2, 3);
+			Archive missing = index.addArchive(3);
+			missing.setFileData(new FileData[]{new FileData()});
+
+			badCrc.setCrc(badCrc.getCrc() + 1);
+			badRevision.setRevision(4);
+
+			VerificationReport report = new StoreVerifier(store).verify();
+			assertFalse(report.isOk());
+			assertEquals(1, report.getIndexes());
+			assertEquals(4, report.getArchives());
+			assertEquals(1, (int) report.getCounts().get(Status.OK));
+			assertEquals(2, report.getFailures().size());
+			assertEquals(1, report.getWarnings().size());
+
+			assertEquals(Status.CRC_MISMATCH, report.getFailures().get(0).getStatus());
+			assertEquals(badCrc.getArchiveId(), report.getFailures().get(0).getArchiveId());
+			assertEquals(Status.MISSING, report.getFailures().get(1).getStatus());
+
+			// revision mismatches are tolerated by the client
+			assertEquals(Status.REVISION_MISMATCH, report.getWarnings().get(0).getStatus());
+			assertEquals(3, report.getWarnings().get(0).getRevision());
+		}
+	}
+
+	private static Archive addArchive(Store store, Index index, int id, int revision) throws IOException
+	{
+		Archive archive = index.addArchive(id);
+		archive.setRevision(revision);
+		archive.setFileData(new FileData[]{new FileData()});
+
+		Container container = new Container(CompressionType.BZ2, revision);
+		container.compress(("archive" + id).getBytes(), null);
+		store.getStorage().saveArchive(archive, container.data);
+		return archive;
+	}
+}
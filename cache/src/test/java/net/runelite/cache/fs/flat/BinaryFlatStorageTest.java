@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.flat;
+
+import java.io.File;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import net.runelite.cache.index.FileData;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinaryFlatStorageTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSaveLoad() throws Exception
+	{
+		File flatDir = folder.newFolder();
+
+		try (Store store = new Store(new DiskStorage(folder.newFolder())))
+		{
+			Index index = store.addIndex(3);
+			index.setRevision(7);
+
+			for (int i = 0; i < 3; ++i)
+			{
+				Archive archive = index.addArchive(i);
+				archive.setNameHash(i * 100);
+				archive.setRevision(i);
+
+				FileData fd = new FileData();
+				fd.setId(5);
+				fd.setNameHash(42);
+				archive.setFileData(new FileData[]{fd});
+
+				if (i != 2)
+				{
+					Container container = new Container(CompressionType.GZ, i);
+					container.compress(("archive" + i).getBytes(), null);
+					store.getStorage().saveArchive(archive, container.data);
+				}
+			}
+			index.getArchive(1).setHash(new byte[]{1, 2, 3});
+
+			new BinaryFlatStorage(flatDir).save(store);
+
+			try (Store flatStore = new Store(new BinaryFlatStorage(flatDir)))
+			{
+				flatStore.load();
+				assertEquals(store, flatStore);
+
+				Index flatIndex = flatStore.findIndex(3);
+				assertEquals(7, flatIndex.getRevision());
+
+				Archive archive = flatIndex.getArchive(1);
+				assertEquals(100, archive.getNameHash());
+				assertArrayEquals(new byte[]{1, 2, 3}, archive.getHash());
+				assertEquals(42, archive.getFileData()[0].getNameHash());
+				assertArrayEquals("archive1".getBytes(), archive.decompress(flatStore.getStorage().loadArchive(archive)));
+
+				assertNull(flatStore.getStorage().loadArchive(flatIndex.getArchive(2)));
+
+				// rewrite an archive in place
+				Container container = new Container(CompressionType.BZ2, 0);
+				container.compress("rewritten".getBytes(), null);
+				flatStore.getStorage().saveArchive(flatIndex.getArchive(0), container.data);
+				flatStore.save();
+			}
+		}
+
+		try (Store flatStore = new Store(new BinaryFlatStorage(flatDir)))
+		{
+			flatStore.load();
+
+			Archive archive = flatStore.findIndex(3).getArchive(0);
+			assertArrayEquals("rewritten".getBytes(), Container.decompress(flatStore.getStorage().loadArchive(archive), null).data);
+
+			archive = flatStore.findIndex(3).getArchive(1);
+			assertArrayEquals("archive1".getBytes(), archive.decompress(flatStore.getStorage().loadArchive(archive)));
+		}
+	}
+}
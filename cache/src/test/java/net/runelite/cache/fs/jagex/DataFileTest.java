@@ -26,6 +26,11 @@ package net.runelite.cache.fs.jagex;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import net.runelite.cache.StoreLocation;
 import net.runelite.cache.fs.Container;
 import org.junit.Assert;
@@ -167,4 +172,50 @@ public class DataFileTest
 		Assert.assertEquals("testtesttesttest1", str);
 		Assert.assertEquals(42, res2.revision);
 	}
+
+	@Test
+	public void testConcurrentMappedRead() throws Exception
+	{
+		DataFile df = new DataFile(folder.newFile(), true);
+
+		byte[][] contents = new byte[64][];
+		DataFileWriteResult[] results = new DataFileWriteResult[contents.length];
+		for (int i = 0; i < contents.length; ++i)
+		{
+			contents[i] = new byte[i * 100 + 1];
+			for (int j = 0; j < contents[i].length; ++j)
+			{
+				contents[i][j] = (byte) (i + j);
+			}
+
+			results[i] = df.write(7, i, contents[i]);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<byte[]>> futures = new ArrayList<>();
+			for (int n = 0; n < 4; ++n)
+			{
+				for (int i = 0; i < contents.length; ++i)
+				{
+					final int archiveId = i;
+					futures.add(executor.submit(() -> df.read(7, archiveId, results[archiveId].sector, results[archiveId].compressedLength)));
+				}
+			}
+
+			for (int i = 0; i < futures.size(); ++i)
+			{
+				Assert.assertArrayEquals(contents[i % contents.length], futures.get(i).get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+
+		// data appended after the file was mapped must still be readable
+		DataFileWriteResult res = df.write(7, 1000, "test".getBytes());
+		Assert.assertArrayEquals("test".getBytes(), df.read(7, 1000, res.sector, res.compressedLength));
+	}
 }
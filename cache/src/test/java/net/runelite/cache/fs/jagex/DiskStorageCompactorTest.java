@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.File;
+import java.io.IOException;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.FileData;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskStorageCompactorTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testCompact() throws IOException
+	{
+		File file = folder.newFolder();
+
+		try (Store store = new Store(new DiskStorage(file)))
+		{
+			Index index = store.addIndex(0);
+			for (int i = 0; i < 4; ++i)
+			{
+				Archive archive = index.addArchive(i);
+				archive.setFileData(new FileData[]{new FileData()});
+
+				// rewrite each archive a few times, leaving dead sectors behind
+				for (int j = 0; j < 3; ++j)
+				{
+					save(store.getStorage(), archive, new byte[1000 * (i + 1) + j]);
+				}
+			}
+			store.save();
+		}
+
+		long sizeBefore = new File(file, "main_file_cache.dat2").length();
+
+		DiskStorageCompactor.CompactionResult result = new DiskStorageCompactor(file).compact();
+		assertEquals(sizeBefore, result.getOldSize());
+		assertTrue(result.getNewSize() < result.getOldSize());
+		assertEquals(5, result.getArchives()); // 4 archives + the index
+		assertEquals(0, result.getDropped());
+
+		try (Store store = new Store(new DiskStorage(file)))
+		{
+			store.load();
+
+			Index index = store.findIndex(0);
+			assertEquals(4, index.getArchives().size());
+			for (int i = 0; i < 4; ++i)
+			{
+				Archive archive = index.getArchive(i);
+				byte[] data = archive.decompress(store.getStorage().loadArchive(archive));
+				assertArrayEquals(new byte[1000 * (i + 1) + 2], data);
+			}
+		}
+	}
+
+	private static void save(Storage storage, Archive archive, byte[] data) throws IOException
+	{
+		Container container = new Container(CompressionType.GZ, -1);
+		container.compress(data, null);
+		storage.saveArchive(archive, container.data);
+	}
+}
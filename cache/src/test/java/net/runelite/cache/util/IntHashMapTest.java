@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class IntHashMapTest
+{
+	@Test
+	public void testPutGetRemove()
+	{
+		IntHashMap<String> map = new IntHashMap<>();
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-1, "b"));
+		assertEquals("a", map.put(1, "c"));
+		assertEquals("c", map.putIfAbsent(1, "d"));
+		assertEquals("c", map.get(1));
+		assertEquals("b", map.get(-1));
+		assertNull(map.get(2));
+		assertEquals(2, map.size());
+
+		assertEquals("c", map.remove(1));
+		assertNull(map.remove(1));
+		assertNull(map.get(1));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testRandom()
+	{
+		Random random = new Random(42L);
+		IntHashMap<Integer> map = new IntHashMap<>();
+		Map<Integer, Integer> expected = new HashMap<>();
+
+		for (int i = 0; i < 100_000; ++i)
+		{
+			// small key range to exercise collisions and removal
+			int key = random.nextInt(4096) - 2048;
+			if (random.nextInt(3) == 0)
+			{
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			else
+			{
+				assertEquals(expected.put(key, i), map.put(key, i));
+			}
+		}
+
+		assertEquals(expected.size(), map.size());
+		for (int key = -2048; key < 2048; ++key)
+		{
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+}
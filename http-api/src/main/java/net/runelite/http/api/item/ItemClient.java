@@ -204,6 +204,64 @@ public class ItemClient
 		}
 	}
 
+	/**
+	 * Get the prices which have changed since a version of the price feed
+	 *
+	 * @param since the version of the prices already held, or null for every
+	 *              price
+	 * @return the changed prices, an empty delta if nothing has changed, or
+	 * null on error
+	 * @throws IOException
+	 */
+	public ItemPriceDelta getPriceDelta(String since) throws IOException
+	{
+		HttpUrl.Builder urlBuilder = RuneLiteAPI.getApiBase().newBuilder()
+			.addPathSegment("item")
+			.addPathSegment("prices")
+			.addPathSegment("delta");
+
+		if (since != null)
+		{
+			urlBuilder.addQueryParameter("since", since);
+		}
+
+		HttpUrl url = urlBuilder.build();
+
+		logger.debug("Built URI: {}", url);
+
+		Request.Builder builder = new Request.Builder()
+			.url(url);
+
+		if (since != null)
+		{
+			builder.header("If-None-Match", '"' + since + '"');
+		}
+
+		try (Response response = RuneLiteAPI.CLIENT.newCall(builder.build()).execute())
+		{
+			if (response.code() == 304)
+			{
+				ItemPriceDelta delta = new ItemPriceDelta();
+				delta.setVersion(since);
+				delta.setPrices(new ItemPrice[0]);
+				return delta;
+			}
+
+			if (!response.isSuccessful())
+			{
+				logger.warn("Error looking up price delta: {}", response);
+				return null;
+			}
+
+			InputStream in = response.body().byteStream();
+			return RuneLiteAPI.GSON.fromJson(new InputStreamReader(in), ItemPriceDelta.class);
+		}
+		catch (JsonParseException ex)
+		{
+			throw new IOException(ex);
+		}
+	}
+
 	public Map<Integer, ItemStats> getStats() throws IOException
 	{
 		HttpUrl.Builder urlBuilder = RuneLiteAPI.getStaticBase().newBuilder()
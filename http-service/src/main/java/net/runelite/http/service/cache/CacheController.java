@@ -24,35 +24,17 @@
  */
 package net.runelite.http.service.cache;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import com.google.common.io.BaseEncoding;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
-import javax.imageio.ImageIO;
 import lombok.extern.slf4j.Slf4j;
-import net.runelite.cache.ConfigType;
-import net.runelite.cache.IndexType;
 import net.runelite.cache.definitions.ItemDefinition;
-import net.runelite.cache.definitions.ModelDefinition;
 import net.runelite.cache.definitions.NpcDefinition;
 import net.runelite.cache.definitions.ObjectDefinition;
-import net.runelite.cache.definitions.SpriteDefinition;
-import net.runelite.cache.definitions.TextureDefinition;
-import net.runelite.cache.definitions.loaders.ItemLoader;
-import net.runelite.cache.definitions.loaders.ModelLoader;
-import net.runelite.cache.definitions.loaders.NpcLoader;
-import net.runelite.cache.definitions.loaders.ObjectLoader;
-import net.runelite.cache.definitions.loaders.SpriteLoader;
-import net.runelite.cache.definitions.loaders.TextureLoader;
-import net.runelite.cache.definitions.providers.ItemProvider;
-import net.runelite.cache.definitions.providers.ModelProvider;
-import net.runelite.cache.definitions.providers.SpriteProvider;
-import net.runelite.cache.definitions.providers.TextureProvider;
-import net.runelite.cache.fs.ArchiveFiles;
-import net.runelite.cache.fs.Container;
-import net.runelite.cache.fs.FSFile;
-import net.runelite.cache.item.ItemSpriteFactory;
 import net.runelite.http.api.cache.Cache;
 import net.runelite.http.api.cache.CacheArchive;
 import net.runelite.http.api.cache.CacheIndex;
@@ -61,21 +43,34 @@ import net.runelite.http.service.cache.beans.CacheEntry;
 import net.runelite.http.service.cache.beans.IndexEntry;
 import net.runelite.http.service.util.exception.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/cache")
 @Slf4j
 public class CacheController
 {
+	// archive data is content addressed, so the data for a given etag never changes
+	private static final String ARCHIVE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+	private static final int MAX_BATCH_IMAGES = 512;
+
 	@Autowired
 	private CacheService cacheService;
 
+	@Autowired
+	private DefinitionService definitionService;
+
+	@Autowired
+	private ItemImageService itemImageService;
+
 	@GetMapping("/")
 	public List<Cache> listCaches()
 	{
@@ -151,10 +146,11 @@ public class CacheController
 	}
 
 	@GetMapping("{cacheId}/{indexId}/{archiveId}/data")
-	public byte[] getArchiveData(
+	public ResponseEntity<byte[]> getArchiveData(
 		@PathVariable int cacheId,
 		@PathVariable int indexId,
-		@PathVariable int archiveId
+		@PathVariable int archiveId,
+		WebRequest webRequest
 	)
 	{
 		CacheEntry cache = cacheService.findCache(cacheId);
@@ -175,50 +171,36 @@ public class CacheController
 			throw new NotFoundException();
 		}
 
-		return cacheService.getArchive(archiveEntry);
-	}
-
-	private ArchiveEntry findConfig(ConfigType config)
-	{
-		CacheEntry cache = cacheService.findMostRecent();
-		if (cache == null)
+		String etag = '"' + BaseEncoding.base16().lowerCase().encode(archiveEntry.getHash()) + '"';
+		if (webRequest.checkNotModified(etag))
 		{
-			throw new NotFoundException();
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+				.eTag(etag)
+				.header(HttpHeaders.CACHE_CONTROL, ARCHIVE_CACHE_CONTROL)
+				.build();
 		}
 
-		IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.CONFIGS.getNumber());
-		if (indexEntry == null)
+		byte[] data = cacheService.getArchive(archiveEntry);
+		if (data == null)
 		{
 			throw new NotFoundException();
 		}
 
-		ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, config.getId());
-		if (archiveEntry == null)
-		{
-			throw new NotFoundException();
-		}
-
-		return archiveEntry;
+		return ResponseEntity.ok()
+			.eTag(etag)
+			.header(HttpHeaders.CACHE_CONTROL, ARCHIVE_CACHE_CONTROL)
+			.body(data);
 	}
 
 	@GetMapping("item/{itemId}")
 	public ItemDefinition getItem(@PathVariable int itemId) throws IOException
 	{
-		ArchiveEntry archiveEntry = findConfig(ConfigType.ITEM);
-
-		ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
-		if (archiveFiles == null)
+		ItemDefinition itemdef = definitionService.getItem(itemId);
+		if (itemdef == null)
 		{
 			throw new NotFoundException();
 		}
 
-		FSFile file = archiveFiles.findFile(itemId);
-		if (file == null)
-		{
-			throw new NotFoundException();
-		}
-
-		ItemDefinition itemdef = new ItemLoader().load(itemId, file.getContents());
 		return itemdef;
 	}
 
@@ -230,88 +212,39 @@ public class CacheController
 		@RequestParam(defaultValue = "3153952") int shadowColor
 	) throws IOException
 	{
-		final CacheEntry cache = cacheService.findMostRecent();
-		ItemProvider itemProvider = new ItemProvider()
-		{
-			@Override
-			public ItemDefinition provide(int itemId)
-			{
-				try
-				{
-					return getItem(itemId);
-				}
-				catch (IOException ex)
-				{
-					log.warn(null, ex);
-					return null;
-				}
-			}
-		};
-		ModelProvider modelProvider = new ModelProvider()
-		{
-			@Override
-			public ModelDefinition provide(int modelId) throws IOException
-			{
-				IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.MODELS.getNumber());
-				ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, modelId);
-				byte[] archiveData = Container.decompress(cacheService.getArchive(archiveEntry), null).data;
-				return new ModelLoader().load(modelId, archiveData);
-			}
-		};
-		SpriteProvider spriteProvider = new SpriteProvider()
+		byte[] image = itemImageService.getItemImage(itemId, quantity, border, shadowColor);
+		if (image == null)
 		{
-			@Override
-			public SpriteDefinition provide(int spriteId, int frameId)
-			{
-				try
-				{
-					IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.SPRITES.getNumber());
-					ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, spriteId);
-					byte[] archiveData = Container.decompress(cacheService.getArchive(archiveEntry), null).data;
-					SpriteDefinition[] defs = new SpriteLoader().load(spriteId, archiveData);
-					return defs[frameId];
-				}
-				catch (Exception ex)
-				{
-					log.warn(null, ex);
-					return null;
-				}
-			}
-		};
-
-		TextureProvider textureProvider2 = new TextureProvider()
+			throw new NotFoundException();
+		}
+
+		return ResponseEntity.ok(image);
+	}
+
+	/**
+	 * Render the images of many items
+	 *
+	 * @return map of item id to base64 encoded png
+	 */
+	@GetMapping("item/image")
+	public Map<Integer, String> getItemImages(
+		@RequestParam("id") int[] itemIds,
+		@RequestParam(defaultValue = "1") int quantity,
+		@RequestParam(defaultValue = "1") int border,
+		@RequestParam(defaultValue = "3153952") int shadowColor
+	) throws IOException
+	{
+		if (itemIds.length > MAX_BATCH_IMAGES)
 		{
-			@Override
-			public TextureDefinition[] provide()
-			{
-				try
-				{
-					IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.TEXTURES.getNumber());
-					ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, 0);
-					ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
-					TextureLoader loader = new TextureLoader();
-					TextureDefinition[] defs = new TextureDefinition[archiveFiles.getFiles().size()];
-					int i = 0;
-					for (FSFile file : archiveFiles.getFiles())
-					{
-						TextureDefinition def = loader.load(file.getFileId(), file.getContents());
-						defs[i++] = def;
-					}
-					return defs;
-				}
-				catch (Exception ex)
-				{
-					log.warn(null, ex);
-					return null;
-				}
-			}
-		};
-
-		BufferedImage itemImage = ItemSpriteFactory.createSprite(itemProvider, modelProvider, spriteProvider, textureProvider2,
-			itemId, quantity, border, shadowColor, false);
-		ByteArrayOutputStream bao = new ByteArrayOutputStream();
-		ImageIO.write(itemImage, "png", bao);
-		return ResponseEntity.ok(bao.toByteArray());
+			itemIds = Arrays.copyOf(itemIds, MAX_BATCH_IMAGES);
+		}
+
+		Map<Integer, byte[]> images = itemImageService.getItemImages(itemIds, quantity, border, shadowColor);
+
+		BaseEncoding base64 = BaseEncoding.base64();
+		Map<Integer, String> result = new LinkedHashMap<>();
+		images.forEach((itemId, image) -> result.put(itemId, base64.encode(image)));
+		return result;
 	}
 
 	@GetMapping("object/{objectId}")
@@ -319,21 +252,12 @@ public class CacheController
 		@PathVariable int objectId
 	) throws IOException
 	{
-		ArchiveEntry archiveEntry = findConfig(ConfigType.OBJECT);
-
-		ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
-		if (archiveFiles == null)
-		{
-			throw new NotFoundException();
-		}
-
-		FSFile file = archiveFiles.findFile(objectId);
-		if (file == null)
+		ObjectDefinition objectdef = definitionService.getObject(objectId);
+		if (objectdef == null)
 		{
 			throw new NotFoundException();
 		}
 
-		ObjectDefinition objectdef = new ObjectLoader().load(objectId, file.getContents());
 		return objectdef;
 	}
 
@@ -342,21 +266,12 @@ public class CacheController
 		@PathVariable int npcId
 	) throws IOException
 	{
-		ArchiveEntry archiveEntry = findConfig(ConfigType.NPC);
-
-		ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
-		if (archiveFiles == null)
-		{
-			throw new NotFoundException();
-		}
-
-		FSFile file = archiveFiles.findFile(npcId);
-		if (file == null)
+		NpcDefinition npcdef = definitionService.getNpc(npcId);
+		if (npcdef == null)
 		{
 			throw new NotFoundException();
 		}
 
-		NpcDefinition npcdef = new NpcLoader().load(npcId, file.getContents());
 		return npcdef;
 	}
 }
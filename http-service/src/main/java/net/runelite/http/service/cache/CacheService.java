@@ -24,6 +24,8 @@
  */
 package net.runelite.http.service.cache;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterables;
 import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteStreams;
@@ -69,6 +71,11 @@ import org.xmlpull.v1.XmlPullParserException;
 @Slf4j
 public class CacheService
 {
+	/**
+	 * Upper bound on the total size of archives held in memory
+	 */
+	private static final long ARCHIVE_CACHE_WEIGHT = 128L * 1024 * 1024;
+
 	@Autowired
 	@Qualifier("Runelite Cache SQL2O")
 	private Sql2o sql2o;
@@ -78,6 +85,15 @@ public class CacheService
 
 	private final MinioClient minioClient;
 
+	/**
+	 * Archives are content addressed by their hash, so a cached archive
+	 * never goes stale
+	 */
+	private final Cache<String, byte[]> archiveCache = CacheBuilder.newBuilder()
+		.maximumWeight(ARCHIVE_CACHE_WEIGHT)
+		.weigher((String hash, byte[] data) -> data.length)
+		.build();
+
 	@Autowired
 	public CacheService(
 		@Value("${minio.endpoint}") String minioEndpoint,
@@ -95,7 +111,8 @@ public class CacheService
 	}
 
 	/**
-	 * retrieve archive from storage
+	 * retrieve archive from storage. The returned array may be shared
+	 * with other callers and must not be modified.
 	 *
 	 * @param archiveEntry
 	 * @return
@@ -103,6 +120,12 @@ public class CacheService
 	public byte[] getArchive(ArchiveEntry archiveEntry)
 	{
 		String hashStr = BaseEncoding.base16().encode(archiveEntry.getHash());
+		byte[] data = archiveCache.getIfPresent(hashStr);
+		if (data != null)
+		{
+			return data;
+		}
+
 		String path = new StringBuilder()
 			.append(hashStr, 0, 2)
 			.append('/')
@@ -111,7 +134,7 @@ public class CacheService
 
 		try (InputStream in = minioClient.getObject(minioBucket, path))
 		{
-			return ByteStreams.toByteArray(in);
+			data = ByteStreams.toByteArray(in);
 		}
 		catch (InvalidBucketNameException | NoSuchAlgorithmException | InsufficientDataException
 			| IOException | InvalidKeyException | NoResponseException | XmlPullParserException
@@ -120,6 +143,9 @@ public class CacheService
 			log.warn(null, ex);
 			return null;
 		}
+
+		archiveCache.put(hashStr, data);
+		return data;
 	}
 
 	public ArchiveFiles getArchiveFiles(ArchiveEntry archiveEntry) throws IOException
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.NpcDefinition;
+import net.runelite.cache.definitions.ObjectDefinition;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.NpcLoader;
+import net.runelite.cache.definitions.loaders.ObjectLoader;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Decoded item, object, and npc definitions of the most recent cache.
+ * Each config archive is decoded once per cache, and the definitions are
+ * replaced all at once when a newer cache is found.
+ */
+@Service
+@Slf4j
+public class DefinitionService
+{
+	private final CacheService cacheService;
+	private final Supplier<CacheEntry> mostRecent;
+
+	private volatile Definitions definitions;
+
+	@Autowired
+	public DefinitionService(CacheService cacheService)
+	{
+		this.cacheService = cacheService;
+		this.mostRecent = Suppliers.memoizeWithExpiration(cacheService::findMostRecent, 1, TimeUnit.MINUTES);
+	}
+
+	public ItemDefinition getItem(int itemId) throws IOException
+	{
+		Definitions defs = getDefinitions();
+		return defs != null ? get(defs.items, itemId) : null;
+	}
+
+	public ObjectDefinition getObject(int objectId) throws IOException
+	{
+		Definitions defs = getDefinitions();
+		return defs != null ? get(defs.objects, objectId) : null;
+	}
+
+	public NpcDefinition getNpc(int npcId) throws IOException
+	{
+		Definitions defs = getDefinitions();
+		return defs != null ? get(defs.npcs, npcId) : null;
+	}
+
+	private static <T> T get(T[] defs, int id)
+	{
+		return id >= 0 && id < defs.length ? defs[id] : null;
+	}
+
+	private Definitions getDefinitions() throws IOException
+	{
+		CacheEntry cache = mostRecent.get();
+		if (cache == null)
+		{
+			return null;
+		}
+
+		Definitions defs = definitions;
+		if (defs != null && defs.cacheId == cache.getId())
+		{
+			return defs;
+		}
+
+		synchronized (this)
+		{
+			defs = definitions;
+			if (defs != null && defs.cacheId == cache.getId())
+			{
+				return defs;
+			}
+
+			defs = load(cache);
+			if (defs != null)
+			{
+				definitions = defs;
+			}
+			return defs;
+		}
+	}
+
+	private Definitions load(CacheEntry cache) throws IOException
+	{
+		IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.CONFIGS.getNumber());
+		if (indexEntry == null)
+		{
+			return null;
+		}
+
+		ItemLoader itemLoader = new ItemLoader();
+		ObjectLoader objectLoader = new ObjectLoader();
+		NpcLoader npcLoader = new NpcLoader();
+
+		ItemDefinition[] items = load(indexEntry, ConfigType.ITEM, ItemDefinition[]::new, itemLoader::load);
+		ObjectDefinition[] objects = load(indexEntry, ConfigType.OBJECT, ObjectDefinition[]::new, objectLoader::load);
+		NpcDefinition[] npcs = load(indexEntry, ConfigType.NPC, NpcDefinition[]::new, npcLoader::load);
+		if (items == null || objects == null || npcs == null)
+		{
+			return null;
+		}
+
+		log.debug("Loaded {} items, {} objects, {} npcs from cache {}", items.length, objects.length, npcs.length, cache.getId());
+
+		return new Definitions(cache.getId(), items, objects, npcs);
+	}
+
+	private <T> T[] load(IndexEntry indexEntry, ConfigType configType, IntFunction<T[]> newArray, BiFunction<Integer, byte[], T> loader) throws IOException
+	{
+		ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, configType.getId());
+		if (archiveEntry == null)
+		{
+			return null;
+		}
+
+		ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
+		if (archiveFiles == null)
+		{
+			return null;
+		}
+
+		// config ids are dense, so index the definitions directly by id
+		int max = -1;
+		for (FSFile file : archiveFiles.getFiles())
+		{
+			max = Math.max(max, file.getFileId());
+		}
+
+		T[] defs = newArray.apply(max + 1);
+		for (FSFile file : archiveFiles.getFiles())
+		{
+			defs[file.getFileId()] = loader.apply(file.getFileId(), file.getContents());
+		}
+		return defs;
+	}
+
+	@Value
+	private static class Definitions
+	{
+		private int cacheId;
+		private ItemDefinition[] items;
+		private ObjectDefinition[] objects;
+		private NpcDefinition[] npcs;
+	}
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.ModelDefinition;
+import net.runelite.cache.definitions.SpriteDefinition;
+import net.runelite.cache.definitions.TextureDefinition;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.ModelLoader;
+import net.runelite.cache.definitions.loaders.SpriteLoader;
+import net.runelite.cache.definitions.loaders.TextureLoader;
+import net.runelite.cache.definitions.providers.ItemProvider;
+import net.runelite.cache.definitions.providers.ModelProvider;
+import net.runelite.cache.definitions.providers.SpriteProvider;
+import net.runelite.cache.definitions.providers.TextureProvider;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.item.ItemSpriteFactory;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Renders item images from the most recent cache. The archives needed for
+ * rendering are kept in memory per cache, and encoded images are cached.
+ * <p>
+ * The item sprite factory modifies the definitions it is given, so the
+ * providers decode new definitions from the cached archive data on every
+ * call, and textures are fully initialized before they are shared.
+ */
+@Service
+@Slf4j
+public class ItemImageService
+{
+	private static final long IMAGE_CACHE_WEIGHT = 32L * 1024 * 1024;
+	private static final long ARCHIVE_CACHE_WEIGHT = 64L * 1024 * 1024;
+	private static final int TEXTURE_BRIGHTNESS_WIDTH = 128;
+	private static final double TEXTURE_BRIGHTNESS = 0.8d;
+
+	private final CacheService cacheService;
+	private final Supplier<CacheEntry> mostRecent;
+	private final ExecutorService executor;
+
+	private final Cache<ImageKey, byte[]> imageCache = CacheBuilder.newBuilder()
+		.maximumWeight(IMAGE_CACHE_WEIGHT)
+		.weigher((ImageKey key, byte[] image) -> image.length)
+		.build();
+
+	private volatile RenderData renderData;
+
+	@Autowired
+	public ItemImageService(CacheService cacheService)
+	{
+		this.cacheService = cacheService;
+		this.mostRecent = Suppliers.memoizeWithExpiration(cacheService::findMostRecent, 1, TimeUnit.MINUTES);
+		this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactoryBuilder()
+			.setNameFormat("item-image-%d")
+			.setDaemon(true)
+			.build());
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Render an item image
+	 *
+	 * @return the png encoded image, or null if the item can't be rendered
+	 */
+	public byte[] getItemImage(int itemId, int quantity, int border, int shadowColor) throws IOException
+	{
+		RenderData data = getRenderData();
+		if (data == null)
+		{
+			return null;
+		}
+
+		ImageKey key = new ImageKey(data.cacheId, itemId, quantity, border, shadowColor);
+		byte[] image = imageCache.getIfPresent(key);
+		if (image != null)
+		{
+			return image.length > 0 ? image : null;
+		}
+
+		try
+		{
+			image = executor.submit(() -> render(data, key)).get();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			throw new IOException(ex.getCause());
+		}
+
+		return image.length > 0 ? image : null;
+	}
+
+	/**
+	 * Render many item images. Images are rendered in parallel on the worker pool.
+	 *
+	 * @return map of item id to png encoded image. Items which can't be rendered
+	 * are omitted.
+	 */
+	public Map<Integer, byte[]> getItemImages(int[] itemIds, int quantity, int border, int shadowColor) throws IOException
+	{
+		Map<Integer, byte[]> images = new LinkedHashMap<>();
+		RenderData data = getRenderData();
+		if (data == null)
+		{
+			return images;
+		}
+
+		Map<Integer, Future<byte[]>> pending = new LinkedHashMap<>();
+		for (int itemId : itemIds)
+		{
+			ImageKey key = new ImageKey(data.cacheId, itemId, quantity, border, shadowColor);
+			byte[] image = imageCache.getIfPresent(key);
+			if (image != null)
+			{
+				images.put(itemId, image);
+			}
+			else if (!pending.containsKey(itemId))
+			{
+				pending.put(itemId, executor.submit(() -> render(data, key)));
+			}
+		}
+
+		try
+		{
+			for (Map.Entry<Integer, Future<byte[]>> entry : pending.entrySet())
+			{
+				images.put(entry.getKey(), entry.getValue().get());
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			throw new IOException(ex.getCause());
+		}
+		finally
+		{
+			pending.values().forEach(future -> future.cancel(true));
+		}
+
+		images.values().removeIf(image -> image.length == 0);
+		return images;
+	}
+
+	private byte[] render(RenderData data, ImageKey key) throws IOException
+	{
+		byte[] image = imageCache.getIfPresent(key);
+		if (image != null)
+		{
+			return image;
+		}
+
+		BufferedImage itemImage;
+		try
+		{
+			itemImage = ItemSpriteFactory.createSprite(data.itemProvider, data.modelProvider, data.spriteProvider, data.textureProvider,
+				key.getItemId(), key.getQuantity(), key.getBorder(), key.getShadowColor(), false);
+		}
+		catch (RuntimeException ex)
+		{
+			// missing definitions and models surface as null pointers from the renderer
+			log.debug("unable to render item {}", key.getItemId(), ex);
+			itemImage = null;
+		}
+		catch (IOException ex)
+		{
+			// the archives may load next time, so don't cache the item as unrenderable
+			log.debug("unable to load models for item {}", key.getItemId(), ex);
+			return new byte[0];
+		}
+
+		if (itemImage == null)
+		{
+			image = new byte[0];
+		}
+		else
+		{
+			ByteArrayOutputStream bao = new ByteArrayOutputStream();
+			ImageIO.write(itemImage, "png", bao);
+			image = bao.toByteArray();
+		}
+
+		imageCache.put(key, image);
+		return image;
+	}
+
+	private RenderData getRenderData() throws IOException
+	{
+		CacheEntry cache = mostRecent.get();
+		if (cache == null)
+		{
+			return null;
+		}
+
+		RenderData data = renderData;
+		if (data != null && data.cacheId == cache.getId())
+		{
+			return data;
+		}
+
+		synchronized (this)
+		{
+			data = renderData;
+			if (data != null && data.cacheId == cache.getId())
+			{
+				return data;
+			}
+
+			data = new RenderData(cache);
+			if (!data.load())
+			{
+				return null;
+			}
+
+			renderData = data;
+			// images of the previous cache are no longer reachable
+			imageCache.invalidateAll();
+			return data;
+		}
+	}
+
+	@Value
+	private static class ImageKey
+	{
+		private int cacheId;
+		private int itemId;
+		private int quantity;
+		private int border;
+		private int shadowColor;
+	}
+
+	private class RenderData
+	{
+		private final CacheEntry cache;
+		private final int cacheId;
+
+		private IndexEntry models;
+		private IndexEntry sprites;
+		private ArchiveFiles items;
+		private TextureDefinition[] textures;
+
+		/**
+		 * decompressed model and sprite archives, keyed by index and archive id
+		 */
+		private final Cache<Long, byte[]> archives = CacheBuilder.newBuilder()
+			.maximumWeight(ARCHIVE_CACHE_WEIGHT)
+			.weigher((Long key, byte[] data) -> data.length)
+			.build();
+
+		private final ItemProvider itemProvider = this::provideItem;
+		private final ModelProvider modelProvider = this::provideModel;
+		private final SpriteProvider spriteProvider = this::provideSprite;
+		private final TextureProvider textureProvider = () -> textures;
+
+		private RenderData(CacheEntry cache)
+		{
+			this.cache = cache;
+			this.cacheId = cache.getId();
+		}
+
+		private boolean load() throws IOException
+		{
+			IndexEntry configs = cacheService.findIndexForCache(cache, IndexType.CONFIGS.getNumber());
+			models = cacheService.findIndexForCache(cache, IndexType.MODELS.getNumber());
+			sprites = cacheService.findIndexForCache(cache, IndexType.SPRITES.getNumber());
+			IndexEntry textureIndex = cacheService.findIndexForCache(cache, IndexType.TEXTURES.getNumber());
+			if (configs == null || models == null || sprites == null || textureIndex == null)
+			{
+				return false;
+			}
+
+			items = getArchiveFiles(configs, ConfigType.ITEM.getId());
+			ArchiveFiles textureFiles = getArchiveFiles(textureIndex, 0);
+			if (items == null || textureFiles == null)
+			{
+				return false;
+			}
+
+			TextureLoader loader = new TextureLoader();
+			TextureDefinition[] defs = new TextureDefinition[textureFiles.getFiles().size()];
+			int i = 0;
+			for (FSFile file : textureFiles.getFiles())
+			{
+				TextureDefinition def = loader.load(file.getFileId(), file.getContents());
+				try
+				{
+					// the texture pixels are otherwise computed lazily during rendering
+					def.method2680(TEXTURE_BRIGHTNESS, TEXTURE_BRIGHTNESS_WIDTH, spriteProvider);
+				}
+				catch (RuntimeException ex)
+				{
+					log.debug("unable to load texture {}", file.getFileId(), ex);
+				}
+				defs[i++] = def;
+			}
+			textures = defs;
+			return true;
+		}
+
+		private ArchiveFiles getArchiveFiles(IndexEntry indexEntry, int archiveId) throws IOException
+		{
+			ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, archiveId);
+			return archiveEntry != null ? cacheService.getArchiveFiles(archiveEntry) : null;
+		}
+
+		private byte[] getArchiveData(IndexEntry indexEntry, int archiveId) throws IOException
+		{
+			long key = (long) indexEntry.getIndexId() << 32 | archiveId;
+			byte[] data = archives.getIfPresent(key);
+			if (data != null)
+			{
+				return data.length > 0 ? data : null;
+			}
+
+			ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, archiveId);
+			byte[] archiveData = archiveEntry != null ? cacheService.getArchive(archiveEntry) : null;
+			data = archiveData != null ? Container.decompress(archiveData, null).data : new byte[0];
+			archives.put(key, data);
+			return data.length > 0 ? data : null;
+		}
+
+		private ItemDefinition provideItem(int itemId)
+		{
+			FSFile file = items.findFile(itemId);
+			return file != null ? new ItemLoader().load(itemId, file.getContents()) : null;
+		}
+
+		private ModelDefinition provideModel(int modelId) throws IOException
+		{
+			byte[] data = getArchiveData(models, modelId);
+			return data != null ? new ModelLoader().load(modelId, data) : null;
+		}
+
+		private SpriteDefinition provideSprite(int spriteId, int frameId)
+		{
+			try
+			{
+				byte[] data = getArchiveData(sprites, spriteId);
+				if (data == null)
+				{
+					return null;
+				}
+
+				SpriteDefinition[] defs = new SpriteLoader().load(spriteId, data);
+				return defs[frameId];
+			}
+			catch (Exception ex)
+			{
+				log.warn(null, ex);
+				return null;
+			}
+		}
+	}
+}
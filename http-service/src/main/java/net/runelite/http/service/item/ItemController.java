@@ -24,27 +24,38 @@
  */
 package net.runelite.http.service.item;
 
-import com.google.common.base.Supplier;
-import com.google.common.base.Suppliers;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 import javax.servlet.http.HttpServletResponse;
+import net.runelite.http.api.RuneLiteAPI;
 import net.runelite.http.api.item.Item;
 import net.runelite.http.api.item.ItemPrice;
+import net.runelite.http.api.item.ItemPriceDelta;
 import net.runelite.http.api.item.SearchResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/item")
@@ -57,26 +68,20 @@ public class ItemController
 		.maximumSize(1024L)
 		.build();
 
-	private final ItemService itemService;
+	// encoded price deltas, keyed by version, since and encoding. Most clients
+	// ask for the delta from one of the last few versions, so these are shared.
+	private final Cache<String, byte[]> encodedDeltas = CacheBuilder.newBuilder()
+		.maximumSize(64L)
+		.build();
 
-	private final Supplier<ItemPrice[]> memorizedPrices;
+	private final ItemService itemService;
+	private final LatestPriceService latestPriceService;
 
 	@Autowired
-	public ItemController(ItemService itemService)
+	public ItemController(ItemService itemService, LatestPriceService latestPriceService)
 	{
 		this.itemService = itemService;
-
-		memorizedPrices = Suppliers.memoizeWithExpiration(() -> itemService.fetchPrices().stream()
-			.map(priceEntry ->
-			{
-				ItemPrice itemPrice = new ItemPrice();
-				itemPrice.setId(priceEntry.getItem());
-				itemPrice.setName(priceEntry.getName());
-				itemPrice.setPrice(priceEntry.getPrice());
-				itemPrice.setTime(priceEntry.getTime());
-				return itemPrice;
-			})
-			.toArray(ItemPrice[]::new), 30, TimeUnit.MINUTES);
+		this.latestPriceService = latestPriceService;
 	}
 
 	@GetMapping("/{itemId}")
@@ -138,6 +143,17 @@ public class ItemController
 			time = now;
 		}
 
+		if (time == null)
+		{
+			ItemPrice itemPrice = latestPriceService.getPrice(itemId);
+			if (itemPrice != null)
+			{
+				return ResponseEntity.ok()
+					.cacheControl(CacheControl.maxAge(30, TimeUnit.MINUTES).cachePublic())
+					.body(itemPrice);
+			}
+		}
+
 		ItemEntry item = itemService.getItem(itemId);
 		if (item == null)
 		{
@@ -148,19 +164,7 @@ public class ItemController
 				.build();
 		}
 
-		PriceEntry priceEntry = itemService.getPrice(itemId, time);
-
-		if (time != null)
-		{
-			if (priceEntry == null)
-			{
-				// we maybe can't backfill this
-				return ResponseEntity.notFound()
-					.header(RUNELITE_CACHE, "MISS")
-					.build();
-			}
-		}
-		else if (priceEntry == null)
+		if (time == null)
 		{
 			// Price is unknown
 			cachedEmpty.put(itemId, itemId);
@@ -169,6 +173,15 @@ public class ItemController
 				.build();
 		}
 
+		PriceEntry priceEntry = itemService.getPrice(itemId, time);
+		if (priceEntry == null)
+		{
+			// we maybe can't backfill this
+			return ResponseEntity.notFound()
+				.header(RUNELITE_CACHE, "MISS")
+				.build();
+		}
+
 		ItemPrice itemPrice = new ItemPrice();
 		itemPrice.setId(item.getId());
 		itemPrice.setName(item.getName());
@@ -195,16 +208,22 @@ public class ItemController
 	}
 
 	@GetMapping("/price")
-	public ItemPrice[] prices(@RequestParam("id") int[] itemIds)
+	public ItemPrice[] prices(
+		@RequestParam("id") int[] itemIds,
+		@RequestParam(required = false) Instant time
+	)
 	{
 		if (itemIds.length > MAX_BATCH_LOOKUP)
 		{
 			itemIds = Arrays.copyOf(itemIds, MAX_BATCH_LOOKUP);
 		}
 
-		List<PriceEntry> prices = itemService.getPrices(itemIds);
+		if (time == null)
+		{
+			return latestPriceService.getPrices(itemIds);
+		}
 
-		return prices.stream()
+		return itemService.getPrices(time, itemIds).stream()
 			.map(priceEntry ->
 			{
 				ItemPrice itemPrice = new ItemPrice();
@@ -218,10 +237,69 @@ public class ItemController
 	}
 
 	@GetMapping("/prices")
-	public ResponseEntity<ItemPrice[]> prices()
+	public ResponseEntity<ItemPrice[]> prices(WebRequest webRequest)
 	{
+		String etag = '"' + latestPriceService.getVersion() + '"';
+		if (webRequest.checkNotModified(etag))
+		{
+			return null;
+		}
+
 		return ResponseEntity.ok()
 			.cacheControl(CacheControl.maxAge(30, TimeUnit.MINUTES).cachePublic())
-			.body(memorizedPrices.get());
+			.eTag(etag)
+			.body(latestPriceService.getPrices());
+	}
+
+	/**
+	 * Get the prices which have changed since a version of the price feed.
+	 * The body is gzipped here when the client accepts it, since the
+	 * container isn't configured to compress responses.
+	 */
+	@GetMapping("/prices/delta")
+	public ResponseEntity<byte[]> priceDelta(
+		WebRequest webRequest,
+		@RequestParam(required = false) String since,
+		@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+	) throws IOException
+	{
+		String version = latestPriceService.getVersion();
+		String etag = '"' + version + '"';
+		if (webRequest.checkNotModified(etag))
+		{
+			return null;
+		}
+
+		boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+		byte[] body;
+		try
+		{
+			body = encodedDeltas.get(version + ':' + since + ':' + gzip, () -> encodeDelta(latestPriceService.getDelta(since), gzip));
+		}
+		catch (ExecutionException ex)
+		{
+			throw new IOException(ex.getCause());
+		}
+
+		ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+			.cacheControl(CacheControl.noCache())
+			.eTag(etag)
+			.contentType(MediaType.APPLICATION_JSON_UTF8)
+			.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (gzip)
+		{
+			builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		return builder.body(body);
+	}
+
+	private static byte[] encodeDelta(ItemPriceDelta delta, boolean gzip) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (Writer writer = new OutputStreamWriter(gzip ? new GZIPOutputStream(out) : out, StandardCharsets.UTF_8))
+		{
+			RuneLiteAPI.GSON.toJson(delta, writer);
+		}
+		return out.toByteArray();
 	}
 }
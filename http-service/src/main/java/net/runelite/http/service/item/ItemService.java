@@ -30,12 +30,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.cache.definitions.ItemDefinition;
 import net.runelite.http.api.RuneLiteAPI;
@@ -79,7 +80,8 @@ public class ItemService
 		+ "  `time` timestamp NOT NULL DEFAULT '0000-00-00 00:00:00',\n"
 		+ "  `fetched_time` timestamp NOT NULL DEFAULT '0000-00-00 00:00:00',\n"
 		+ "  UNIQUE KEY `item_time` (`item`,`time`),\n"
-		+ "  KEY `item_fetched_time` (`item`,`fetched_time`)\n"
+		+ "  KEY `item_fetched_time` (`item`,`fetched_time`),\n"
+		+ "  KEY `fetched_time` (`fetched_time`)\n" // existing tables need: ALTER TABLE prices ADD KEY fetched_time (fetched_time)
 		+ ") ENGINE=InnoDB";
 
 	private static final int MAX_PENDING = 512;
@@ -120,57 +122,52 @@ public class ItemService
 		}
 	}
 
-	private PriceEntry getPrice(Connection con, int itemId, Instant time)
+	/**
+	 * Get the price of an item as of a time
+	 */
+	public PriceEntry getPrice(int itemId, Instant time)
 	{
-		if (time != null)
-		{
-			return con.createQuery("select item, name, price, time, fetched_time from prices t1 join items t2 on t1.item=t2.id where item = :item and time <= :time order by time desc limit 1")
-				.addParameter("item", itemId)
-				.addParameter("time", time.toString())
-				.executeAndFetchFirst(PriceEntry.class);
-		}
-		else
-		{
-			return con.createQuery("select item, name, price, time, fetched_time from prices t1 join items t2 on t1.item=t2.id where item = :item order by time desc limit 1")
-				.addParameter("item", itemId)
-				.executeAndFetchFirst(PriceEntry.class);
-		}
+		List<PriceEntry> prices = getPrices(time, itemId);
+		return prices.isEmpty() ? null : prices.get(0);
 	}
 
-	public PriceEntry getPrice(int itemId, Instant time)
+	/**
+	 * Get the price of each item as of a time, in a single query
+	 */
+	public List<PriceEntry> getPrices(Instant time, int... itemIds)
 	{
+		if (itemIds.length == 0)
+		{
+			return Collections.emptyList();
+		}
+
+		String ids = Arrays.stream(itemIds)
+			.distinct()
+			.mapToObj(Integer::toString)
+			.collect(Collectors.joining(","));
+
 		try (Connection con = sql2o.open())
 		{
-			return getPrice(con, itemId, time);
+			return con.createQuery("select t1.item, t2.name, t1.price, t1.time, t1.fetched_time from prices t1"
+				+ " join (select item, max(time) as time from prices where item in (" + ids + ") and time <= :time group by item) t3"
+				+ " on t1.item = t3.item and t1.time = t3.time"
+				+ " join items t2 on t1.item = t2.id")
+				.addParameter("time", time.toString())
+				.executeAndFetch(PriceEntry.class);
 		}
 	}
 
-	public List<PriceEntry> getPrices(int... itemIds)
+	/**
+	 * Get the prices which have been fetched since a time
+	 */
+	public List<PriceEntry> fetchPricesSince(Instant fetchedTime)
 	{
 		try (Connection con = sql2o.open())
 		{
-			Set<Integer> seen = new HashSet<>();
-			List<PriceEntry> priceEntries = new ArrayList<>(itemIds.length);
-
-			for (int itemId : itemIds)
-			{
-				if (seen.contains(itemId))
-				{
-					continue;
-				}
-				seen.add(itemId);
-
-				PriceEntry priceEntry = getPrice(con, itemId, null);
-
-				if (priceEntry == null)
-				{
-					continue;
-				}
-
-				priceEntries.add(priceEntry);
-			}
-
-			return priceEntries;
+			return con.createQuery("select t1.item, t2.name, t1.price, t1.time, t1.fetched_time from prices t1"
+				+ " join items t2 on t1.item = t2.id where t1.fetched_time >= :fetched_time")
+				.addParameter("fetched_time", fetchedTime.toString())
+				.executeAndFetch(PriceEntry.class);
 		}
 	}
 
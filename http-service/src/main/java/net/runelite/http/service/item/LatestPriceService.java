@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.http.api.item.ItemPrice;
+import net.runelite.http.api.item.ItemPriceDelta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * The latest price of every item, kept in memory. The prices are loaded once
+ * and then refreshed with only the prices which have been fetched since.
+ * <p>
+ * Every refresh which changes a price creates a new version, and the version
+ * each price last changed in is kept so that clients can fetch just the
+ * prices which have changed since the version they have. Versions are only
+ * meaningful within one instance of the service, and so are prefixed with
+ * the time it started.
+ */
+@Service
+@Slf4j
+public class LatestPriceService
+{
+	// prices fetched this long before the last refresh are read again, in
+	// case their transaction was committed after it
+	private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(5);
+
+	private static class Snapshot
+	{
+		// indexed by item id
+		private final ItemPrice[] prices;
+		// version each price last changed in, indexed by item id
+		private final int[] versions;
+		private final int version;
+
+		Snapshot(ItemPrice[] prices, int[] versions, int version)
+		{
+			this.prices = prices;
+			this.versions = versions;
+			this.version = version;
+		}
+	}
+
+	private final ItemService itemService;
+	private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+	private volatile Snapshot snapshot;
+	private Instant lastFetchedTime;
+
+	@Autowired
+	public LatestPriceService(ItemService itemService)
+	{
+		this.itemService = itemService;
+	}
+
+	/**
+	 * @return the latest price of the item, or null if it is unknown
+	 */
+	public ItemPrice getPrice(int itemId)
+	{
+		ItemPrice[] prices = getSnapshot().prices;
+		return itemId >= 0 && itemId < prices.length ? prices[itemId] : null;
+	}
+
+	/**
+	 * @return the latest prices of the items, skipping duplicate and unknown
+	 * items
+	 */
+	public ItemPrice[] getPrices(int[] itemIds)
+	{
+		ItemPrice[] prices = getSnapshot().prices;
+		return Arrays.stream(itemIds)
+			.distinct()
+			.filter(itemId -> itemId >= 0 && itemId < prices.length && prices[itemId] != null)
+			.mapToObj(itemId -> prices[itemId])
+			.toArray(ItemPrice[]::new);
+	}
+
+	/**
+	 * @return the latest price of every item
+	 */
+	public ItemPrice[] getPrices()
+	{
+		return Arrays.stream(getSnapshot().prices)
+			.filter(Objects::nonNull)
+			.toArray(ItemPrice[]::new);
+	}
+
+	public String getVersion()
+	{
+		return epoch + "-" + getSnapshot().version;
+	}
+
+	/**
+	 * Get the prices which have changed since a version
+	 *
+	 * @param since version the client has, or null
+	 * @return the changed prices, or every price if the version is not known
+	 */
+	public ItemPriceDelta getDelta(String since)
+	{
+		Snapshot snapshot = getSnapshot();
+		int sinceVersion = parseVersion(since);
+
+		ItemPriceDelta delta = new ItemPriceDelta();
+		delta.setVersion(epoch + "-" + snapshot.version);
+
+		if (sinceVersion < 0 || sinceVersion > snapshot.version)
+		{
+			delta.setFull(true);
+			delta.setPrices(getPrices());
+			return delta;
+		}
+
+		delta.setPrices(IntStream.range(0, snapshot.prices.length)
+			.filter(itemId -> snapshot.versions[itemId] > sinceVersion)
+			.mapToObj(itemId -> snapshot.prices[itemId])
+			.toArray(ItemPrice[]::new));
+		return delta;
+	}
+
+	private int parseVersion(String version)
+	{
+		if (version == null || !version.startsWith(epoch + "-"))
+		{
+			return -1;
+		}
+
+		try
+		{
+			return Integer.parseInt(version.substring(epoch.length() + 1));
+		}
+		catch (NumberFormatException ex)
+		{
+			return -1;
+		}
+	}
+
+	private Snapshot getSnapshot()
+	{
+		Snapshot snapshot = this.snapshot;
+		if (snapshot == null)
+		{
+			synchronized (this)
+			{
+				snapshot = this.snapshot;
+				if (snapshot == null)
+				{
+					snapshot = load();
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	private Snapshot load()
+	{
+		Instant now = Instant.now();
+		List<PriceEntry> entries = itemService.fetchPrices();
+		Snapshot snapshot = merge(new Snapshot(new ItemPrice[0], new int[0], 0), entries);
+
+		log.debug("Loaded {} item prices", entries.size());
+
+		lastFetchedTime = latestFetchedTime(entries, now);
+		this.snapshot = snapshot;
+		return snapshot;
+	}
+
+	@Scheduled(fixedDelay = 60_000)
+	public synchronized void refresh()
+	{
+		if (snapshot == null)
+		{
+			// not loaded yet
+			return;
+		}
+
+		List<PriceEntry> entries = itemService.fetchPricesSince(lastFetchedTime.minus(REFRESH_OVERLAP));
+		if (entries.isEmpty())
+		{
+			return;
+		}
+
+		Snapshot previous = snapshot;
+		snapshot = merge(previous, entries);
+		lastFetchedTime = latestFetchedTime(entries, lastFetchedTime);
+
+		log.debug("Refreshed {} item prices, version {} -> {}", entries.size(), previous.version, snapshot.version);
+	}
+
+	/**
+	 * Merge prices into a copy of a snapshot, keeping the most recent price
+	 * of each item. The new snapshot has a new version only if a price
+	 * changed.
+	 */
+	private static Snapshot merge(Snapshot snapshot, List<PriceEntry> entries)
+	{
+		int size = snapshot.prices.length;
+		for (PriceEntry entry : entries)
+		{
+			size = Math.max(size, entry.getItem() + 1);
+		}
+
+		int version = snapshot.version + 1;
+		boolean changed = false;
+
+		ItemPrice[] prices = Arrays.copyOf(snapshot.prices, size);
+		int[] versions = Arrays.copyOf(snapshot.versions, size);
+		for (PriceEntry entry : entries)
+		{
+			ItemPrice current = prices[entry.getItem()];
+			if (current != null && (current.getTime().isAfter(entry.getTime())
+				|| (current.getTime().equals(entry.getTime()) && current.getPrice() == entry.getPrice()
+					&& Objects.equals(current.getName(), entry.getName()))))
+			{
+				// older, or the same price fetched again
+				continue;
+			}
+
+			ItemPrice itemPrice = new ItemPrice();
+			itemPrice.setId(entry.getItem());
+			itemPrice.setName(entry.getName());
+			itemPrice.setPrice(entry.getPrice());
+			itemPrice.setTime(entry.getTime());
+			prices[entry.getItem()] = itemPrice;
+			versions[entry.getItem()] = version;
+			changed = true;
+		}
+
+		return changed ? new Snapshot(prices, versions, version) : snapshot;
+	}
+
+	private static Instant latestFetchedTime(List<PriceEntry> entries, Instant initial)
+	{
+		Instant latest = initial;
+		for (PriceEntry entry : entries)
+		{
+			if (entry.getFetched_time() != null && entry.getFetched_time().isAfter(latest))
+			{
+				latest = entry.getFetched_time();
+			}
+		}
+		return latest;
+	}
+}
@@ -62,7 +62,16 @@ public class LootTrackerController
 			return;
 		}
 
-		service.store(records, e.getUser());
+		try
+		{
+			service.store(records, e.getUser());
+		}
+		catch (IllegalArgumentException ex)
+		{
+			response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+
 		response.setStatus(HttpStatusCodes.STATUS_CODE_OK);
 	}
 
@@ -25,20 +25,26 @@
  */
 package net.runelite.http.service.loottracker;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import net.runelite.http.api.loottracker.GameItem;
 import net.runelite.http.api.loottracker.LootRecord;
+import net.runelite.http.service.util.WriteBehindBuffer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.sql2o.Connection;
-import org.sql2o.Query;
 import org.sql2o.Sql2o;
 
 @Service
+@Slf4j
 public class LootTrackerService
 {
 	// Table for storing individual LootRecords
@@ -62,19 +68,22 @@ public class LootTrackerService
 		+ "  FOREIGN KEY (killId) REFERENCES kills(id) ON DELETE CASCADE\n"
 		+ ") ENGINE=InnoDB";
 
-	// Queries for inserting kills
-	private static final String INSERT_KILL_QUERY = "INSERT INTO kills (accountId, type, eventId) VALUES (:accountId, :type, :eventId)";
-	private static final String INSERT_DROP_QUERY = "INSERT INTO drops (killId, itemId, itemQuantity) VALUES (:killId, :itemId, :itemQuantity)";
-
 	private static final String SELECT_LOOT_QUERY = "SELECT killId,time,type,eventId,itemId,itemQuantity FROM kills JOIN drops ON drops.killId = kills.id WHERE accountId = :accountId ORDER BY TIME DESC LIMIT :limit OFFSET :offset";
 
 	private static final String DELETE_LOOT_ACCOUNT = "DELETE FROM kills WHERE accountId = :accountId";
 	private static final String DELETE_LOOT_ACCOUNT_EVENTID = "DELETE FROM kills WHERE accountId = :accountId AND eventId = :eventId";
 
 	private final Sql2o sql2o;
+	// kills waiting to be stored, which are coalesced across requests
+	private final WriteBehindBuffer<PendingKill> pendingKills;
 
 	@Autowired
-	public LootTrackerService(@Qualifier("Runelite SQL2O") Sql2o sql2o)
+	public LootTrackerService(
+		@Qualifier("Runelite SQL2O") Sql2o sql2o,
+		@Value("${loottracker.batch-size:1000}") int batchSize,
+		@Value("${loottracker.max-pending:100000}") int maxPending,
+		@Value("${loottracker.flush-interval:5000}") long flushInterval
+	)
 	{
 		this.sql2o = sql2o;
 
@@ -84,58 +93,44 @@ public class LootTrackerService
 			con.createQuery(CREATE_KILLS).executeUpdate();
 			con.createQuery(CREATE_DROPS).executeUpdate();
 		}
+
+		this.pendingKills = new WriteBehindBuffer<>("loottracker", new LootWriter(sql2o), batchSize, maxPending, flushInterval);
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		pendingKills.close();
 	}
 
 	/**
-	 * Store LootRecord
+	 * Store LootRecord. The records are buffered and stored in a batch with
+	 * other requests' records shortly after.
 	 *
 	 * @param records   LootRecords to store
 	 * @param accountId runelite account id to tie data too
+	 * @throws IllegalArgumentException if any of the records is invalid, in
+	 *                                  which case none of them are stored
 	 */
 	public void store(Collection<LootRecord> records, int accountId)
 	{
-		try (Connection con = sql2o.beginTransaction())
+		// a bad record would fail the whole batch it is written in, so reject it up front
+		for (LootRecord record : records)
 		{
-			// Kill Entry Query
-			Query killQuery = con.createQuery(INSERT_KILL_QUERY, true);
-
-			for (LootRecord record : records)
+			if (record == null || record.getType() == null || record.getEventId() == null
+				|| record.getDrops() == null || record.getDrops().contains(null))
 			{
-				killQuery
-					.addParameter("accountId", accountId)
-					.addParameter("type", record.getType())
-					.addParameter("eventId", record.getEventId())
-					.addToBatch();
+				throw new IllegalArgumentException("Invalid loot record");
 			}
+		}
 
-			killQuery.executeBatch();
-			Object[] keys = con.getKeys();
-
-			if (keys.length != records.size())
-			{
-				throw new RuntimeException("Mismatch in keys vs records size");
-			}
-
-			Query insertDrop = con.createQuery(INSERT_DROP_QUERY);
-
-			// Append all queries for inserting drops
-			int idx = 0;
-			for (LootRecord record : records)
+		Instant now = Instant.now();
+		for (LootRecord record : records)
+		{
+			if (!pendingKills.offer(new PendingKill(accountId, record, now)))
 			{
-				for (GameItem drop : record.getDrops())
-				{
-					insertDrop
-						.addParameter("killId", keys[idx])
-						.addParameter("itemId", drop.getId())
-						.addParameter("itemQuantity", drop.getQty())
-						.addToBatch();
-				}
-
-				++idx;
+				log.debug("Loot buffer is full, dropping loot for {}", accountId);
 			}
-
-			insertDrop.executeBatch();
-			con.commit(false);
 		}
 	}
 
@@ -186,6 +181,11 @@ public class LootTrackerService
 
 	public void delete(int accountId, String eventId)
 	{
+		// don't store loot which is deleted before it is written. This waits
+		// for a flush in progress, so its kills are committed before the delete
+		pendingKills.removeIf(kill -> kill.getAccountId() == accountId
+			&& (eventId == null || Objects.equals(eventId, kill.getRecord().getEventId())));
+
 		try (Connection con = sql2o.open())
 		{
 			if (eventId == null)
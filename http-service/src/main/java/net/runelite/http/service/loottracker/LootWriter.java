@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.loottracker;
+
+import java.util.List;
+import java.util.function.Consumer;
+import net.runelite.http.api.loottracker.GameItem;
+import org.sql2o.Connection;
+import org.sql2o.Query;
+import org.sql2o.Sql2o;
+
+/**
+ * Stores batches of kills, from any number of accounts, in one transaction
+ */
+class LootWriter implements Consumer<List<PendingKill>>
+{
+	// Queries for inserting kills
+	private static final String INSERT_KILL_QUERY = "INSERT INTO kills (time, accountId, type, eventId) VALUES (:time, :accountId, :type, :eventId)";
+	private static final String INSERT_DROP_QUERY = "INSERT INTO drops (killId, itemId, itemQuantity) VALUES (:killId, :itemId, :itemQuantity)";
+
+	private final Sql2o sql2o;
+
+	LootWriter(Sql2o sql2o)
+	{
+		this.sql2o = sql2o;
+	}
+
+	@Override
+	public void accept(List<PendingKill> kills)
+	{
+		try (Connection con = sql2o.beginTransaction())
+		{
+			// Kill Entry Query
+			Query killQuery = con.createQuery(INSERT_KILL_QUERY, true);
+
+			for (PendingKill kill : kills)
+			{
+				killQuery
+					.addParameter("time", kill.getTime())
+					.addParameter("accountId", kill.getAccountId())
+					.addParameter("type", kill.getRecord().getType())
+					.addParameter("eventId", kill.getRecord().getEventId())
+					.addToBatch();
+			}
+
+			killQuery.executeBatch();
+			Object[] keys = con.getKeys();
+
+			if (keys.length != kills.size())
+			{
+				throw new RuntimeException("Mismatch in keys vs records size");
+			}
+
+			Query insertDrop = con.createQuery(INSERT_DROP_QUERY);
+
+			// Append all queries for inserting drops
+			int idx = 0;
+			for (PendingKill kill : kills)
+			{
+				for (GameItem drop : kill.getRecord().getDrops())
+				{
+					insertDrop
+						.addParameter("killId", keys[idx])
+						.addParameter("itemId", drop.getId())
+						.addParameter("itemQuantity", drop.getQty())
+						.addToBatch();
+				}
+
+				++idx;
+			}
+
+			insertDrop.executeBatch();
+			con.commit(false);
+		}
+	}
+}
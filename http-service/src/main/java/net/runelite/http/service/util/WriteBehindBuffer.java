@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Buffers items in memory and writes them in batches, either every flush
+ * interval or as soon as a full batch is buffered.
+ * <p>
+ * The number of buffered items is bounded, and items offered while the
+ * buffer is full are dropped. If a batch fails to be written its items are
+ * retried one at a time, and items which still fail are lost. Both dropped
+ * and lost items are counted in the {@link Stats}.
+ *
+ * @param <T> type of item
+ */
+@Slf4j
+public class WriteBehindBuffer<T> implements AutoCloseable
+{
+	private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+	private final String name;
+	private final Consumer<List<T>> writer;
+	private final int batchSize;
+	private final BlockingQueue<T> pending;
+	private final ScheduledExecutorService executor;
+	private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder written = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private long reportedLost;
+
+	/**
+	 * @param name          name of the buffer, for logging
+	 * @param writer        writes a batch of items
+	 * @param batchSize     maximum number of items written at once
+	 * @param maxPending    maximum number of items buffered
+	 * @param flushInterval time between flushes, in milliseconds
+	 */
+	public WriteBehindBuffer(String name, Consumer<List<T>> writer, int batchSize, int maxPending, long flushInterval)
+	{
+		this.name = name;
+		this.writer = writer;
+		this.batchSize = batchSize;
+		this.pending = new LinkedBlockingQueue<>(maxPending);
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+			.setNameFormat(name + "-writer")
+			.setDaemon(true)
+			.build());
+
+		executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Buffer an item to be written
+	 *
+	 * @return true if the item was buffered, false if it was dropped because
+	 * the buffer is full
+	 */
+	public boolean offer(T item)
+	{
+		if (!pending.offer(item))
+		{
+			dropped.increment();
+			return false;
+		}
+
+		accepted.increment();
+
+		if (pending.size() >= batchSize && flushQueued.compareAndSet(false, true))
+		{
+			executor.execute(() ->
+			{
+				flushQueued.set(false);
+				flush();
+			});
+		}
+		return true;
+	}
+
+	/**
+	 * Remove buffered items before they are written. This waits for a flush
+	 * in progress, so items which are not removed have already been written.
+	 *
+	 * @return true if any items were removed
+	 */
+	public synchronized boolean removeIf(Predicate<T> filter)
+	{
+		return pending.removeIf(filter);
+	}
+
+	/**
+	 * Write all of the buffered items
+	 */
+	public synchronized void flush()
+	{
+		List<T> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+		while (pending.drainTo(batch, batchSize) > 0)
+		{
+			try
+			{
+				writer.accept(batch);
+				written.add(batch.size());
+			}
+			catch (RuntimeException ex)
+			{
+				log.warn("Unable to write batch of {} to {}, retrying individually", batch.size(), name, ex);
+				writeIndividually(batch);
+			}
+
+			batches.increment();
+			batch.clear();
+		}
+
+		long lost = dropped.sum() + failed.sum();
+		if (lost > reportedLost)
+		{
+			log.warn("{} has lost {} items, {} since the last flush", name, lost, lost - reportedLost);
+			reportedLost = lost;
+		}
+	}
+
+	private void writeIndividually(List<T> batch)
+	{
+		for (T item : batch)
+		{
+			try
+			{
+				writer.accept(Collections.singletonList(item));
+				written.increment();
+			}
+			catch (RuntimeException ex)
+			{
+				failed.increment();
+				log.warn("Unable to write {} to {}", item, name, ex);
+			}
+		}
+	}
+
+	/**
+	 * Stop flushing periodically, and write everything still buffered
+	 */
+	@Override
+	public void close()
+	{
+		executor.shutdown();
+		try
+		{
+			executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		flush();
+
+		log.info("{} closed: {}", name, getStats());
+	}
+
+	public Stats getStats()
+	{
+		return new Stats(accepted.sum(), dropped.sum(), written.sum(), failed.sum(), batches.sum(), pending.size());
+	}
+
+	@Value
+	public static class Stats
+	{
+		private long accepted;
+		private long dropped;
+		private long written;
+		private long failed;
+		private long batches;
+		private int pending;
+
+		/**
+		 * @return the number of items which have been dropped or failed to
+		 * be written
+		 */
+		public long getLost()
+		{
+			return dropped + failed;
+		}
+	}
+}
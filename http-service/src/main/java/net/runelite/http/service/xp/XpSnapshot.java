@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import java.time.Instant;
+import java.util.Arrays;
+import net.runelite.http.api.hiscore.HiscoreResult;
+import net.runelite.http.api.hiscore.HiscoreResultBuilder;
+import net.runelite.http.api.hiscore.HiscoreSkill;
+import net.runelite.http.api.hiscore.Skill;
+import net.runelite.http.api.xp.XpData;
+import net.runelite.http.service.xp.beans.XpSkillEntity;
+
+/**
+ * The xp and rank of each skill of a player, indexed by
+ * {@link HiscoreSkill} ordinal. This is how xp is stored with
+ * {@link XpStorage#DELTA}, where the skill column is the ordinal.
+ */
+class XpSnapshot
+{
+	/**
+	 * Number of skills tracked, overall followed by each skill
+	 */
+	static final int SKILLS = HiscoreSkill.CONSTRUCTION.ordinal() + 1;
+
+	final long[] xp = new long[SKILLS];
+	final int[] rank = new int[SKILLS];
+	Instant time;
+
+	static XpSnapshot of(HiscoreResult hiscoreResult)
+	{
+		XpSnapshot snapshot = new XpSnapshot();
+		HiscoreSkill[] skills = HiscoreSkill.values();
+		for (int i = 0; i < SKILLS; ++i)
+		{
+			Skill skill = hiscoreResult.getSkill(skills[i]);
+			snapshot.xp[i] = skill.getExperience();
+			snapshot.rank[i] = skill.getRank();
+		}
+		return snapshot;
+	}
+
+	static XpSnapshot of(XpData xpData)
+	{
+		XpSnapshot snapshot = new XpSnapshot();
+		snapshot.time = xpData.getTime();
+		snapshot.xp[HiscoreSkill.ATTACK.ordinal()] = xpData.getAttack_xp();
+		snapshot.xp[HiscoreSkill.DEFENCE.ordinal()] = xpData.getDefence_xp();
+		snapshot.xp[HiscoreSkill.STRENGTH.ordinal()] = xpData.getStrength_xp();
+		snapshot.xp[HiscoreSkill.HITPOINTS.ordinal()] = xpData.getHitpoints_xp();
+		snapshot.xp[HiscoreSkill.RANGED.ordinal()] = xpData.getRanged_xp();
+		snapshot.xp[HiscoreSkill.PRAYER.ordinal()] = xpData.getPrayer_xp();
+		snapshot.xp[HiscoreSkill.MAGIC.ordinal()] = xpData.getMagic_xp();
+		snapshot.xp[HiscoreSkill.COOKING.ordinal()] = xpData.getCooking_xp();
+		snapshot.xp[HiscoreSkill.WOODCUTTING.ordinal()] = xpData.getWoodcutting_xp();
+		snapshot.xp[HiscoreSkill.FLETCHING.ordinal()] = xpData.getFletching_xp();
+		snapshot.xp[HiscoreSkill.FISHING.ordinal()] = xpData.getFishing_xp();
+		snapshot.xp[HiscoreSkill.FIREMAKING.ordinal()] = xpData.getFiremaking_xp();
+		snapshot.xp[HiscoreSkill.CRAFTING.ordinal()] = xpData.getCrafting_xp();
+		snapshot.xp[HiscoreSkill.SMITHING.ordinal()] = xpData.getSmithing_xp();
+		snapshot.xp[HiscoreSkill.MINING.ordinal()] = xpData.getMining_xp();
+		snapshot.xp[HiscoreSkill.HERBLORE.ordinal()] = xpData.getHerblore_xp();
+		snapshot.xp[HiscoreSkill.AGILITY.ordinal()] = xpData.getAgility_xp();
+		snapshot.xp[HiscoreSkill.THIEVING.ordinal()] = xpData.getThieving_xp();
+		snapshot.xp[HiscoreSkill.SLAYER.ordinal()] = xpData.getSlayer_xp();
+		snapshot.xp[HiscoreSkill.FARMING.ordinal()] = xpData.getFarming_xp();
+		snapshot.xp[HiscoreSkill.RUNECRAFT.ordinal()] = xpData.getRunecraft_xp();
+		snapshot.xp[HiscoreSkill.HUNTER.ordinal()] = xpData.getHunter_xp();
+		snapshot.xp[HiscoreSkill.CONSTRUCTION.ordinal()] = xpData.getConstruction_xp();
+		snapshot.rank[HiscoreSkill.OVERALL.ordinal()] = xpData.getOverall_rank();
+		snapshot.rank[HiscoreSkill.ATTACK.ordinal()] = xpData.getAttack_rank();
+		snapshot.rank[HiscoreSkill.DEFENCE.ordinal()] = xpData.getDefence_rank();
+		snapshot.rank[HiscoreSkill.STRENGTH.ordinal()] = xpData.getStrength_rank();
+		snapshot.rank[HiscoreSkill.HITPOINTS.ordinal()] = xpData.getHitpoints_rank();
+		snapshot.rank[HiscoreSkill.RANGED.ordinal()] = xpData.getRanged_rank();
+		snapshot.rank[HiscoreSkill.PRAYER.ordinal()] = xpData.getPrayer_rank();
+		snapshot.rank[HiscoreSkill.MAGIC.ordinal()] = xpData.getMagic_rank();
+		snapshot.rank[HiscoreSkill.COOKING.ordinal()] = xpData.getCooking_rank();
+		snapshot.rank[HiscoreSkill.WOODCUTTING.ordinal()] = xpData.getWoodcutting_rank();
+		snapshot.rank[HiscoreSkill.FLETCHING.ordinal()] = xpData.getFletching_rank();
+		snapshot.rank[HiscoreSkill.FISHING.ordinal()] = xpData.getFishing_rank();
+		snapshot.rank[HiscoreSkill.FIREMAKING.ordinal()] = xpData.getFiremaking_rank();
+		snapshot.rank[HiscoreSkill.CRAFTING.ordinal()] = xpData.getCrafting_rank();
+		snapshot.rank[HiscoreSkill.SMITHING.ordinal()] = xpData.getSmithing_rank();
+		snapshot.rank[HiscoreSkill.MINING.ordinal()] = xpData.getMining_rank();
+		snapshot.rank[HiscoreSkill.HERBLORE.ordinal()] = xpData.getHerblore_rank();
+		snapshot.rank[HiscoreSkill.AGILITY.ordinal()] = xpData.getAgility_rank();
+		snapshot.rank[HiscoreSkill.THIEVING.ordinal()] = xpData.getThieving_rank();
+		snapshot.rank[HiscoreSkill.SLAYER.ordinal()] = xpData.getSlayer_rank();
+		snapshot.rank[HiscoreSkill.FARMING.ordinal()] = xpData.getFarming_rank();
+		snapshot.rank[HiscoreSkill.RUNECRAFT.ordinal()] = xpData.getRunecraft_rank();
+		snapshot.rank[HiscoreSkill.HUNTER.ordinal()] = xpData.getHunter_rank();
+		snapshot.rank[HiscoreSkill.CONSTRUCTION.ordinal()] = xpData.getConstruction_rank();
+
+		long overall = 0;
+		for (int i = 1; i < SKILLS; ++i)
+		{
+			overall += snapshot.xp[i];
+		}
+		snapshot.xp[HiscoreSkill.OVERALL.ordinal()] = overall;
+		return snapshot;
+	}
+
+	/**
+	 * Apply a stored skill on top of this snapshot
+	 */
+	void apply(XpSkillEntity xpSkillEntity)
+	{
+		xp[xpSkillEntity.getSkill()] = xpSkillEntity.getXp();
+		rank[xpSkillEntity.getSkill()] = xpSkillEntity.getRank();
+		if (xpSkillEntity.getTime() != null && (time == null || xpSkillEntity.getTime().isAfter(time)))
+		{
+			time = xpSkillEntity.getTime();
+		}
+	}
+
+	/**
+	 * Compare the xp of each skill, ignoring overall which is derived from
+	 * them
+	 */
+	boolean xpEquals(XpSnapshot other)
+	{
+		for (int i = 1; i < SKILLS; ++i)
+		{
+			if (xp[i] != other.xp[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The xp gained since an earlier snapshot. Skills which weren't ranked
+	 * in the earlier snapshot have gained nothing. Ranks are not set.
+	 *
+	 * @param earlier earlier snapshot, or null to take this snapshot as
+	 *                the gains
+	 */
+	XpSnapshot minus(XpSnapshot earlier)
+	{
+		XpSnapshot gained = new XpSnapshot();
+		if (earlier == null)
+		{
+			System.arraycopy(xp, 0, gained.xp, 0, SKILLS);
+			return gained;
+		}
+
+		for (int i = 1; i < SKILLS; ++i)
+		{
+			gained.xp[i] = earlier.xp[i] >= 0 ? xp[i] - earlier.xp[i] : 0;
+			gained.xp[HiscoreSkill.OVERALL.ordinal()] += gained.xp[i];
+		}
+		return gained;
+	}
+
+	XpData toXpData()
+	{
+		HiscoreResultBuilder builder = new HiscoreResultBuilder();
+		HiscoreSkill[] skills = HiscoreSkill.values();
+		for (int i = 0; i < skills.length; ++i)
+		{
+			builder.setNextSkill(i < SKILLS ? new Skill(rank[i], -1, xp[i]) : new Skill(-1, -1, -1));
+		}
+
+		XpData xpData = XpMapper.INSTANCE.hiscoreResultToXpData(builder.build());
+		xpData.setTime(time);
+		return xpData;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (!(obj instanceof XpSnapshot))
+		{
+			return false;
+		}
+
+		XpSnapshot other = (XpSnapshot) obj;
+		return Arrays.equals(xp, other.xp) && Arrays.equals(rank, other.rank);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * Arrays.hashCode(xp) + Arrays.hashCode(rank);
+	}
+}
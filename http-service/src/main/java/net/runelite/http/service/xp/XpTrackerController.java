@@ -25,8 +25,11 @@
 package net.runelite.http.service.xp;
 
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import net.runelite.http.api.hiscore.HiscoreSkill;
 import net.runelite.http.api.xp.XpData;
-import net.runelite.http.service.xp.beans.XpEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -37,6 +40,9 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/xp")
 public class XpTrackerController
 {
+	private static final int MAX_GAINS_PLAYERS = 100;
+	private static final int MAX_TOP = 1000;
+
 	@Autowired
 	private XpTrackerService xpTrackerService;
 
@@ -53,7 +59,56 @@ public class XpTrackerController
 		{
 			time = Instant.now();
 		}
-		XpEntity xpEntity = xpTrackerService.findXpAtTime(username, time);
-		return XpMapper.INSTANCE.xpEntityToXpData(xpEntity);
+		return xpTrackerService.findXpAtTime(username, time);
+	}
+
+	@GetMapping("/gains")
+	public Map<String, XpData> gains(
+		@RequestParam("username") List<String> usernames,
+		@RequestParam Instant start,
+		@RequestParam(required = false) Instant end
+	)
+	{
+		if (end == null)
+		{
+			end = Instant.now();
+		}
+
+		if (usernames.size() > MAX_GAINS_PLAYERS)
+		{
+			usernames = usernames.subList(0, MAX_GAINS_PLAYERS);
+		}
+
+		return xpTrackerService.getGains(usernames, start, end);
+	}
+
+	@GetMapping("/top")
+	public Map<String, Long> top(
+		@RequestParam HiscoreSkill skill,
+		@RequestParam Instant start,
+		@RequestParam(required = false) Instant end,
+		@RequestParam(defaultValue = "100") int limit
+	)
+	{
+		if (end == null)
+		{
+			end = Instant.now();
+		}
+		return xpTrackerService.getTopGains(skill, start, end, Math.min(limit, MAX_TOP));
+	}
+
+	@GetMapping("/history")
+	public Map<LocalDate, Long> history(
+		@RequestParam String username,
+		@RequestParam HiscoreSkill skill,
+		@RequestParam Instant start,
+		@RequestParam(required = false) Instant end
+	)
+	{
+		if (end == null)
+		{
+			end = Instant.now();
+		}
+		return xpTrackerService.getGainHistory(username, skill, start, end);
 	}
 }
@@ -24,255 +24,715 @@
  */
 package net.runelite.http.service.xp;
 
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnels;
-import java.nio.charset.Charset;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.sql.Date;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.PreDestroy;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.http.api.hiscore.HiscoreEndpoint;
 import net.runelite.http.api.hiscore.HiscoreResult;
+import net.runelite.http.api.hiscore.HiscoreSkill;
 import net.runelite.http.api.xp.XpData;
 import net.runelite.http.service.hiscore.HiscoreService;
 import net.runelite.http.service.xp.beans.PlayerEntity;
 import net.runelite.http.service.xp.beans.XpEntity;
+import net.runelite.http.service.xp.beans.XpSkillEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.sql2o.Connection;
+import org.sql2o.Query;
 import org.sql2o.Sql2o;
+import org.sql2o.data.Row;
+import org.sql2o.data.Table;
 
+/**
+ * Tracks player xp by periodically looking up players on the hiscores.
+ * <p>
+ * Players submitted for an update pass through a pipeline: submitted
+ * usernames are checked against the database in batches to see if they are
+ * due an update, players which are due are queued with the most out of date
+ * first, a pool of threads looks them up on the hiscores at a limited rate,
+ * and the results are written back in batches.
+ * <p>
+ * Each time a player's xp changes the xp gained in each skill is added to a
+ * daily rollup, which leaderboards and gain charts are computed from.
+ */
 @Service
 @Slf4j
 public class XpTrackerService
 {
 	private static final int QUEUE_LIMIT = 32768;
-	private static final int BLOOMFILTER_EXPECTED_INSERTIONS = 100_000;
+	private static final int RECENT_LIMIT = 100_000;
+	private static final Duration RECENT_EXPIRY = Duration.ofHours(6);
+	private static final int BATCH_SIZE = 512;
 
-	@Autowired
-	@Qualifier("Runelite XP Tracker SQL2O")
-	private Sql2o sql2o;
+	private static final String INSERT_XP = "insert into xp (player,attack_xp,defence_xp,strength_xp,hitpoints_xp,ranged_xp,prayer_xp,magic_xp,cooking_xp,woodcutting_xp,"
+		+ "fletching_xp,fishing_xp,firemaking_xp,crafting_xp,smithing_xp,mining_xp,herblore_xp,agility_xp,thieving_xp,slayer_xp,farming_xp,"
+		+ "runecraft_xp,hunter_xp,construction_xp,attack_rank,defence_rank,strength_rank,hitpoints_rank,ranged_rank,prayer_rank,magic_rank,"
+		+ "cooking_rank,woodcutting_rank,fletching_rank,fishing_rank,firemaking_rank,crafting_rank,smithing_rank,mining_rank,herblore_rank,"
+		+ "agility_rank,thieving_rank,slayer_rank,farming_rank,runecraft_rank,hunter_rank,construction_rank,overall_rank) values (:player,:attack_xp,:defence_xp,"
+		+ ":strength_xp,:hitpoints_xp,:ranged_xp,:prayer_xp,:magic_xp,:cooking_xp,:woodcutting_xp,:fletching_xp,:fishing_xp,:firemaking_xp,"
+		+ ":crafting_xp,:smithing_xp,:mining_xp,:herblore_xp,:agility_xp,:thieving_xp,:slayer_xp,:farming_xp,:runecraft_xp,:hunter_xp,"
+		+ ":construction_xp,:attack_rank,:defence_rank,:strength_rank,:hitpoints_rank,:ranged_rank,:prayer_rank,:magic_rank,:cooking_rank,"
+		+ ":woodcutting_rank,:fletching_rank,:fishing_rank,:firemaking_rank,:crafting_rank,:smithing_rank,:mining_rank,:herblore_rank,"
+		+ ":agility_rank,:thieving_rank,:slayer_rank,:farming_rank,:runecraft_rank,:hunter_rank,:construction_rank,:overall_rank)";
+	private static final String INSERT_XP_SKILL = "insert into xp_skill (player, skill, time, xp, rank) values (:player, :skill, :time, :xp, :rank)";
+	private static final String INSERT_XP_GAIN = "insert into xp_gain (player, skill, day, gained) values (:player, :skill, :day, :gained) "
+		+ "on duplicate key update gained = gained + values(gained)";
+
+	private final Sql2o sql2o;
+	private final HiscoreService hiscoreService;
+	private final RateLimiter rateLimiter;
+	private final ExecutorService fetchExecutor;
+	private final XpStorage storage;
+
+	// usernames submitted recently, which don't need to be checked again
+	private final Cache<String, Boolean> recentUsernames = CacheBuilder.newBuilder()
+		.maximumSize(RECENT_LIMIT)
+		.expireAfterWrite(RECENT_EXPIRY.toMillis(), TimeUnit.MILLISECONDS)
+		.build();
+	// usernames waiting to be checked if they are due an update
+	private final BlockingQueue<String> submittedUsernames = new LinkedBlockingQueue<>(QUEUE_LIMIT);
+	// players due an update, most out of date first
+	private final BlockingQueue<PendingUpdate> updateQueue = new PriorityBlockingQueue<>();
+	// hiscores waiting to be written
+	private final BlockingQueue<HiscoreUpdate> hiscoreUpdates = new LinkedBlockingQueue<>(QUEUE_LIMIT);
 
 	@Autowired
-	private HiscoreService hiscoreService;
+	public XpTrackerService(
+		@Qualifier("Runelite XP Tracker SQL2O") Sql2o sql2o,
+		HiscoreService hiscoreService,
+		@Value("${xptracker.rate:1}") double rate,
+		@Value("${xptracker.threads:4}") int threads,
+		@Value("${xptracker.storage:FULL}") XpStorage storage
+	)
+	{
+		this.sql2o = sql2o;
+		this.hiscoreService = hiscoreService;
+		this.storage = storage;
+		this.rateLimiter = RateLimiter.create(rate);
+		this.fetchExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+			.setNameFormat("xp-tracker-%d")
+			.setDaemon(true)
+			.build());
 
-	private final Queue<String> usernameUpdateQueue = new ArrayDeque<>();
-	private BloomFilter<String> usernameFilter = createFilter();
+		for (int i = 0; i < threads; ++i)
+		{
+			fetchExecutor.submit(this::fetchUpdates);
+		}
+	}
 
-	public void update(String username) throws ExecutionException
+	@PreDestroy
+	public void shutdown()
 	{
-		HiscoreResult hiscoreResult = hiscoreService.lookupUsername(username, HiscoreEndpoint.NORMAL);
-		update(username, hiscoreResult);
+		fetchExecutor.shutdownNow();
+		// write what has already been looked up
+		flush();
 	}
 
+	/**
+	 * Submit a player to be updated, if they are due an update
+	 */
 	public void tryUpdate(String username)
 	{
-		if (usernameFilter.mightContain(username))
+		if (recentUsernames.getIfPresent(username) != null)
 		{
 			return;
 		}
 
-		try (Connection con = sql2o.open())
+		recentUsernames.put(username, Boolean.TRUE);
+
+		if (!submittedUsernames.offer(username))
 		{
-			PlayerEntity playerEntity = findOrCreatePlayer(con, username);
-			Duration frequency = updateFrequency(playerEntity);
-			Instant now = Instant.now();
-			Duration timeSinceLastUpdate = Duration.between(playerEntity.getLast_updated(), now);
-			if (timeSinceLastUpdate.toMillis() < frequency.toMillis())
+			log.warn("Username update queue is full ({})", QUEUE_LIMIT);
+			// allow it to be submitted again later
+			recentUsernames.invalidate(username);
+		}
+	}
+
+	/**
+	 * Record a player's hiscore, which has been looked up elsewhere
+	 */
+	public void update(String username, HiscoreResult hiscoreResult)
+	{
+		if (hiscoreResult == null)
+		{
+			return;
+		}
+
+		recentUsernames.put(username, Boolean.TRUE);
+
+		if (!hiscoreUpdates.offer(new HiscoreUpdate(username, hiscoreResult)))
+		{
+			log.warn("Hiscore update queue is full ({})", QUEUE_LIMIT);
+		}
+	}
+
+	/**
+	 * Check the submitted players against when they were last updated, and
+	 * queue the ones which are due an update
+	 */
+	@Scheduled(fixedDelay = 1000)
+	public void queueUpdates()
+	{
+		List<String> usernames = new ArrayList<>(BATCH_SIZE);
+		while (submittedUsernames.drainTo(usernames, BATCH_SIZE) > 0)
+		{
+			Map<String, PlayerEntity> players;
+			try (Connection con = sql2o.open())
 			{
-				log.debug("User {} updated too recently", username);
-				usernameFilter.put(username);
-				return;
+				players = findPlayers(con, usernames);
 			}
 
-			synchronized (usernameUpdateQueue)
+			Instant now = Instant.now();
+			for (String username : usernames)
 			{
-				if (usernameUpdateQueue.size() >= QUEUE_LIMIT)
+				PlayerEntity playerEntity = players.get(username);
+				// players which have never been looked up are the most out of date
+				Instant due = playerEntity == null ? Instant.EPOCH : playerEntity.getLast_updated().plus(updateFrequency(playerEntity));
+				if (due.isAfter(now))
+				{
+					log.debug("User {} updated too recently", username);
+					continue;
+				}
+
+				if (updateQueue.size() >= QUEUE_LIMIT)
 				{
-					log.warn("Username update queue is full ({})", QUEUE_LIMIT);
-					return;
+					log.warn("Player update queue is full ({})", QUEUE_LIMIT);
+					recentUsernames.invalidate(username);
+					continue;
 				}
 
-				usernameUpdateQueue.add(username);
+				updateQueue.add(new PendingUpdate(username, due));
+			}
+
+			usernames.clear();
+		}
+	}
+
+	private void fetchUpdates()
+	{
+		while (!Thread.currentThread().isInterrupted())
+		{
+			PendingUpdate pendingUpdate;
+			try
+			{
+				pendingUpdate = updateQueue.take();
+			}
+			catch (InterruptedException ex)
+			{
+				return;
+			}
+
+			rateLimiter.acquire();
+
+			String username = pendingUpdate.getUsername();
+			try
+			{
+				HiscoreResult hiscoreResult = hiscoreService.lookupUsername(username, HiscoreEndpoint.NORMAL);
+				update(username, hiscoreResult);
+			}
+			catch (ExecutionException | RuntimeException ex)
+			{
+				log.debug("Unable to look up hiscore for {}", username, ex);
 			}
 		}
+	}
 
-		usernameFilter.put(username);
+	/**
+	 * Write the hiscores which have been looked up
+	 */
+	@Scheduled(fixedDelay = 1000)
+	public synchronized void flush()
+	{
+		List<HiscoreUpdate> updates = new ArrayList<>(BATCH_SIZE);
+		while (hiscoreUpdates.drainTo(updates, BATCH_SIZE) > 0)
+		{
+			write(updates);
+			updates.clear();
+		}
 	}
 
-	public void update(String username, HiscoreResult hiscoreResult)
+	private void write(List<HiscoreUpdate> updates)
 	{
-		try (Connection con = sql2o.open())
+		// keep only the most recent hiscore of each player
+		Map<String, HiscoreResult> hiscores = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (HiscoreUpdate update : updates)
 		{
-			PlayerEntity playerEntity = findOrCreatePlayer(con, username);
+			hiscores.put(update.getUsername(), update.getHiscoreResult());
+		}
 
+		try (Connection con = sql2o.beginTransaction())
+		{
+			Map<String, PlayerEntity> players = findOrCreatePlayers(con, hiscores.keySet());
 			Instant now = Instant.now();
-			XpEntity currentXp = findXpAtTime(con, username, now);
-			if (currentXp != null)
+			Map<Integer, XpSnapshot> currentXp = findXpAtTime(con, players.values(), now, false);
+			Date day = toDay(now);
+
+			Query insertXp = con.createQuery(storage == XpStorage.DELTA ? INSERT_XP_SKILL : INSERT_XP);
+			Query insertGain = con.createQuery(INSERT_XP_GAIN);
+			Query updatePlayer = con.createQuery("update player set rank = :rank, last_updated = CURRENT_TIMESTAMP where id = :id");
+			int changed = 0;
+			int gains = 0;
+
+			for (Map.Entry<String, HiscoreResult> entry : hiscores.entrySet())
 			{
-				XpData hiscoreData = XpMapper.INSTANCE.hiscoreResultToXpData(hiscoreResult);
-				XpData existingData = XpMapper.INSTANCE.xpEntityToXpData(currentXp);
+				int player = players.get(entry.getKey()).getId();
+				HiscoreResult hiscoreResult = entry.getValue();
+
+				updatePlayer
+					.addParameter("id", player)
+					.addParameter("rank", hiscoreResult.getOverall().getRank())
+					.addToBatch();
+
+				XpSnapshot snapshot = XpSnapshot.of(hiscoreResult);
+				XpSnapshot previous = currentXp.get(player);
+				// ranks are only recorded with xp changes in delta storage
+				if (previous != null && previous.xpEquals(snapshot)
+					&& (storage == XpStorage.DELTA || Arrays.equals(previous.rank, snapshot.rank)))
+				{
+					log.debug("Hiscore for {} already up to date", entry.getKey());
+					continue;
+				}
+
+				if (storage == XpStorage.DELTA)
+				{
+					for (int skill = 0; skill < XpSnapshot.SKILLS; ++skill)
+					{
+						if (previous == null || previous.xp[skill] != snapshot.xp[skill])
+						{
+							insertXp
+								.addParameter("player", player)
+								.addParameter("skill", skill)
+								.addParameter("time", now)
+								.addParameter("xp", snapshot.xp[skill])
+								.addParameter("rank", snapshot.rank[skill])
+								.addToBatch();
+						}
+					}
+				}
+				else
+				{
+					addXpParameters(insertXp, player, hiscoreResult)
+						.addToBatch();
+				}
+				++changed;
+
+				if (previous == null)
+				{
+					continue;
+				}
 
-				if (hiscoreData.equals(existingData))
+				// overall is the sum of the skills' gains, which skips the
+				// skills which weren't ranked before
+				long overall = 0;
+				for (int skill = 1; skill < XpSnapshot.SKILLS; ++skill)
+				{
+					long gained = snapshot.xp[skill] - previous.xp[skill];
+					if (previous.xp[skill] >= 0 && gained > 0)
+					{
+						addGain(insertGain, player, skill, day, gained);
+						overall += gained;
+						++gains;
+					}
+				}
+				if (overall > 0)
 				{
-					log.debug("Hiscore for {} already up to date", username);
-					return;
+					addGain(insertGain, player, HiscoreSkill.OVERALL.ordinal(), day, overall);
+					++gains;
 				}
 			}
 
-			con.createQuery("insert into xp (player,attack_xp,defence_xp,strength_xp,hitpoints_xp,ranged_xp,prayer_xp,magic_xp,cooking_xp,woodcutting_xp,"
-				+ "fletching_xp,fishing_xp,firemaking_xp,crafting_xp,smithing_xp,mining_xp,herblore_xp,agility_xp,thieving_xp,slayer_xp,farming_xp,"
-				+ "runecraft_xp,hunter_xp,construction_xp,attack_rank,defence_rank,strength_rank,hitpoints_rank,ranged_rank,prayer_rank,magic_rank,"
-				+ "cooking_rank,woodcutting_rank,fletching_rank,fishing_rank,firemaking_rank,crafting_rank,smithing_rank,mining_rank,herblore_rank,"
-				+ "agility_rank,thieving_rank,slayer_rank,farming_rank,runecraft_rank,hunter_rank,construction_rank,overall_rank) values (:player,:attack_xp,:defence_xp,"
-				+ ":strength_xp,:hitpoints_xp,:ranged_xp,:prayer_xp,:magic_xp,:cooking_xp,:woodcutting_xp,:fletching_xp,:fishing_xp,:firemaking_xp,"
-				+ ":crafting_xp,:smithing_xp,:mining_xp,:herblore_xp,:agility_xp,:thieving_xp,:slayer_xp,:farming_xp,:runecraft_xp,:hunter_xp,"
-				+ ":construction_xp,:attack_rank,:defence_rank,:strength_rank,:hitpoints_rank,:ranged_rank,:prayer_rank,:magic_rank,:cooking_rank,"
-				+ ":woodcutting_rank,:fletching_rank,:fishing_rank,:firemaking_rank,:crafting_rank,:smithing_rank,:mining_rank,:herblore_rank,"
-				+ ":agility_rank,:thieving_rank,:slayer_rank,:farming_rank,:runecraft_rank,:hunter_rank,:construction_rank,:overall_rank)")
-				.addParameter("player", playerEntity.getId())
-				.addParameter("attack_xp", hiscoreResult.getAttack().getExperience())
-				.addParameter("defence_xp", hiscoreResult.getDefence().getExperience())
-				.addParameter("strength_xp", hiscoreResult.getStrength().getExperience())
-				.addParameter("hitpoints_xp", hiscoreResult.getHitpoints().getExperience())
-				.addParameter("ranged_xp", hiscoreResult.getRanged().getExperience())
-				.addParameter("prayer_xp", hiscoreResult.getPrayer().getExperience())
-				.addParameter("magic_xp", hiscoreResult.getMagic().getExperience())
-				.addParameter("cooking_xp", hiscoreResult.getCooking().getExperience())
-				.addParameter("woodcutting_xp", hiscoreResult.getWoodcutting().getExperience())
-				.addParameter("fletching_xp", hiscoreResult.getFletching().getExperience())
-				.addParameter("fishing_xp", hiscoreResult.getFishing().getExperience())
-				.addParameter("firemaking_xp", hiscoreResult.getFiremaking().getExperience())
-				.addParameter("crafting_xp", hiscoreResult.getCrafting().getExperience())
-				.addParameter("smithing_xp", hiscoreResult.getSmithing().getExperience())
-				.addParameter("mining_xp", hiscoreResult.getMining().getExperience())
-				.addParameter("herblore_xp", hiscoreResult.getHerblore().getExperience())
-				.addParameter("agility_xp", hiscoreResult.getAgility().getExperience())
-				.addParameter("thieving_xp", hiscoreResult.getThieving().getExperience())
-				.addParameter("slayer_xp", hiscoreResult.getSlayer().getExperience())
-				.addParameter("farming_xp", hiscoreResult.getFarming().getExperience())
-				.addParameter("runecraft_xp", hiscoreResult.getRunecraft().getExperience())
-				.addParameter("hunter_xp", hiscoreResult.getHunter().getExperience())
-				.addParameter("construction_xp", hiscoreResult.getConstruction().getExperience())
-				.addParameter("attack_rank", hiscoreResult.getAttack().getRank())
-				.addParameter("defence_rank", hiscoreResult.getDefence().getRank())
-				.addParameter("strength_rank", hiscoreResult.getStrength().getRank())
-				.addParameter("hitpoints_rank", hiscoreResult.getHitpoints().getRank())
-				.addParameter("ranged_rank", hiscoreResult.getRanged().getRank())
-				.addParameter("prayer_rank", hiscoreResult.getPrayer().getRank())
-				.addParameter("magic_rank", hiscoreResult.getMagic().getRank())
-				.addParameter("cooking_rank", hiscoreResult.getCooking().getRank())
-				.addParameter("woodcutting_rank", hiscoreResult.getWoodcutting().getRank())
-				.addParameter("fletching_rank", hiscoreResult.getFletching().getRank())
-				.addParameter("fishing_rank", hiscoreResult.getFishing().getRank())
-				.addParameter("firemaking_rank", hiscoreResult.getFiremaking().getRank())
-				.addParameter("crafting_rank", hiscoreResult.getCrafting().getRank())
-				.addParameter("smithing_rank", hiscoreResult.getSmithing().getRank())
-				.addParameter("mining_rank", hiscoreResult.getMining().getRank())
-				.addParameter("herblore_rank", hiscoreResult.getHerblore().getRank())
-				.addParameter("agility_rank", hiscoreResult.getAgility().getRank())
-				.addParameter("thieving_rank", hiscoreResult.getThieving().getRank())
-				.addParameter("slayer_rank", hiscoreResult.getSlayer().getRank())
-				.addParameter("farming_rank", hiscoreResult.getFarming().getRank())
-				.addParameter("runecraft_rank", hiscoreResult.getRunecraft().getRank())
-				.addParameter("hunter_rank", hiscoreResult.getHunter().getRank())
-				.addParameter("construction_rank", hiscoreResult.getConstruction().getRank())
-				.addParameter("overall_rank", hiscoreResult.getOverall().getRank())
-				.executeUpdate();
-
-			con.createQuery("update player set rank = :rank, last_updated = CURRENT_TIMESTAMP where id = :id")
-				.addParameter("id", playerEntity.getId())
-				.addParameter("rank", hiscoreResult.getOverall().getRank())
-				.executeUpdate();
+			if (changed > 0)
+			{
+				insertXp.executeBatch();
+			}
+			if (gains > 0)
+			{
+				insertGain.executeBatch();
+			}
+			updatePlayer.executeBatch();
+			con.commit();
+
+			log.debug("Wrote {} hiscores, {} changed", hiscores.size(), changed);
 		}
 	}
 
-	private synchronized PlayerEntity findOrCreatePlayer(Connection con, String username)
+	private static void addGain(Query query, int player, int skill, Date day, long gained)
 	{
-		PlayerEntity playerEntity = con.createQuery("select * from player where name = :name")
-			.addParameter("name", username)
-			.executeAndFetchFirst(PlayerEntity.class);
-		if (playerEntity != null)
+		query
+			.addParameter("player", player)
+			.addParameter("skill", skill)
+			.addParameter("day", day)
+			.addParameter("gained", gained)
+			.addToBatch();
+	}
+
+	private static Query addXpParameters(Query query, int player, HiscoreResult hiscoreResult)
+	{
+		return query
+			.addParameter("player", player)
+			.addParameter("attack_xp", hiscoreResult.getAttack().getExperience())
+			.addParameter("defence_xp", hiscoreResult.getDefence().getExperience())
+			.addParameter("strength_xp", hiscoreResult.getStrength().getExperience())
+			.addParameter("hitpoints_xp", hiscoreResult.getHitpoints().getExperience())
+			.addParameter("ranged_xp", hiscoreResult.getRanged().getExperience())
+			.addParameter("prayer_xp", hiscoreResult.getPrayer().getExperience())
+			.addParameter("magic_xp", hiscoreResult.getMagic().getExperience())
+			.addParameter("cooking_xp", hiscoreResult.getCooking().getExperience())
+			.addParameter("woodcutting_xp", hiscoreResult.getWoodcutting().getExperience())
+			.addParameter("fletching_xp", hiscoreResult.getFletching().getExperience())
+			.addParameter("fishing_xp", hiscoreResult.getFishing().getExperience())
+			.addParameter("firemaking_xp", hiscoreResult.getFiremaking().getExperience())
+			.addParameter("crafting_xp", hiscoreResult.getCrafting().getExperience())
+			.addParameter("smithing_xp", hiscoreResult.getSmithing().getExperience())
+			.addParameter("mining_xp", hiscoreResult.getMining().getExperience())
+			.addParameter("herblore_xp", hiscoreResult.getHerblore().getExperience())
+			.addParameter("agility_xp", hiscoreResult.getAgility().getExperience())
+			.addParameter("thieving_xp", hiscoreResult.getThieving().getExperience())
+			.addParameter("slayer_xp", hiscoreResult.getSlayer().getExperience())
+			.addParameter("farming_xp", hiscoreResult.getFarming().getExperience())
+			.addParameter("runecraft_xp", hiscoreResult.getRunecraft().getExperience())
+			.addParameter("hunter_xp", hiscoreResult.getHunter().getExperience())
+			.addParameter("construction_xp", hiscoreResult.getConstruction().getExperience())
+			.addParameter("attack_rank", hiscoreResult.getAttack().getRank())
+			.addParameter("defence_rank", hiscoreResult.getDefence().getRank())
+			.addParameter("strength_rank", hiscoreResult.getStrength().getRank())
+			.addParameter("hitpoints_rank", hiscoreResult.getHitpoints().getRank())
+			.addParameter("ranged_rank", hiscoreResult.getRanged().getRank())
+			.addParameter("prayer_rank", hiscoreResult.getPrayer().getRank())
+			.addParameter("magic_rank", hiscoreResult.getMagic().getRank())
+			.addParameter("cooking_rank", hiscoreResult.getCooking().getRank())
+			.addParameter("woodcutting_rank", hiscoreResult.getWoodcutting().getRank())
+			.addParameter("fletching_rank", hiscoreResult.getFletching().getRank())
+			.addParameter("fishing_rank", hiscoreResult.getFishing().getRank())
+			.addParameter("firemaking_rank", hiscoreResult.getFiremaking().getRank())
+			.addParameter("crafting_rank", hiscoreResult.getCrafting().getRank())
+			.addParameter("smithing_rank", hiscoreResult.getSmithing().getRank())
+			.addParameter("mining_rank", hiscoreResult.getMining().getRank())
+			.addParameter("herblore_rank", hiscoreResult.getHerblore().getRank())
+			.addParameter("agility_rank", hiscoreResult.getAgility().getRank())
+			.addParameter("thieving_rank", hiscoreResult.getThieving().getRank())
+			.addParameter("slayer_rank", hiscoreResult.getSlayer().getRank())
+			.addParameter("farming_rank", hiscoreResult.getFarming().getRank())
+			.addParameter("runecraft_rank", hiscoreResult.getRunecraft().getRank())
+			.addParameter("hunter_rank", hiscoreResult.getHunter().getRank())
+			.addParameter("construction_rank", hiscoreResult.getConstruction().getRank())
+			.addParameter("overall_rank", hiscoreResult.getOverall().getRank());
+	}
+
+	/**
+	 * Find players by name, keyed case-insensitively like the database
+	 */
+	private static Map<String, PlayerEntity> findPlayers(Connection con, Collection<String> usernames)
+	{
+		Map<String, PlayerEntity> players = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		if (usernames.isEmpty())
 		{
-			return playerEntity;
+			return players;
 		}
 
+		List<String> names = new ArrayList<>(usernames);
+		String params = IntStream.range(0, names.size())
+			.mapToObj(i -> ":name" + i)
+			.collect(Collectors.joining(","));
+		Query query = con.createQuery("select * from player where name in (" + params + ")");
+		for (int i = 0; i < names.size(); ++i)
+		{
+			query.addParameter("name" + i, names.get(i));
+		}
+
+		for (PlayerEntity playerEntity : query.executeAndFetch(PlayerEntity.class))
+		{
+			players.put(playerEntity.getName(), playerEntity);
+		}
+		return players;
+	}
+
+	private static Map<String, PlayerEntity> findOrCreatePlayers(Connection con, Collection<String> usernames)
+	{
+		Map<String, PlayerEntity> players = findPlayers(con, usernames);
+		List<String> missing = usernames.stream()
+			.filter(username -> !players.containsKey(username))
+			.collect(Collectors.toList());
+		if (missing.isEmpty())
+		{
+			return players;
+		}
+
+		Query insert = con.createQuery("insert into player (name, tracked_since) values (:name, :tracked_since)");
 		Instant now = Instant.now();
+		for (String username : missing)
+		{
+			insert
+				.addParameter("name", username)
+				.addParameter("tracked_since", now)
+				.addToBatch();
+		}
+		insert.executeBatch();
 
-		int id = con.createQuery("insert into player (name, tracked_since) values (:name, :tracked_since)")
-			.addParameter("name", username)
-			.addParameter("tracked_since", now)
-			.executeUpdate()
-			.getKey(int.class);
-
-		playerEntity = new PlayerEntity();
-		playerEntity.setId(id);
-		playerEntity.setName(username);
-		playerEntity.setTracked_since(now);
-		playerEntity.setLast_updated(now);
-		return playerEntity;
+		players.putAll(findPlayers(con, missing));
+		return players;
 	}
 
-	private XpEntity findXpAtTime(Connection con, String username, Instant time)
+	/**
+	 * Find the xp of players at a time, keyed by player id
+	 *
+	 * @param earliest find the earliest xp of the players before the time
+	 *                 instead of the most recent
+	 */
+	private Map<Integer, XpSnapshot> findXpAtTime(Connection con, Collection<PlayerEntity> players, Instant time, boolean earliest)
 	{
-		return con.createQuery("select * from xp join player on player.id=xp.player where player.name = :username and time <= :time order by time desc limit 1")
+		if (players.isEmpty())
+		{
+			return Collections.emptyMap();
+		}
+
+		String ids = players.stream()
+			.map(player -> player.getId().toString())
+			.collect(Collectors.joining(","));
+		String aggregate = earliest ? "min" : "max";
+
+		if (storage == XpStorage.DELTA)
+		{
+			List<XpSkillEntity> skills = con.createQuery("select xp_skill.* from xp_skill join (select player, skill, " + aggregate + "(time) as time from xp_skill "
+				+ "where player in (" + ids + ") and time <= :time group by player, skill) latest "
+				+ "on latest.player = xp_skill.player and latest.skill = xp_skill.skill and latest.time = xp_skill.time")
+				.addParameter("time", time)
+				.executeAndFetch(XpSkillEntity.class);
+
+			Map<Integer, XpSnapshot> snapshots = new HashMap<>();
+			for (XpSkillEntity skill : skills)
+			{
+				snapshots.computeIfAbsent(skill.getPlayer(), player -> new XpSnapshot())
+					.apply(skill);
+			}
+			return snapshots;
+		}
+
+		return con.createQuery("select xp.* from xp join (select player, " + aggregate + "(time) as time from xp "
+			+ "where player in (" + ids + ") and time <= :time group by player) latest "
+			+ "on latest.player = xp.player and latest.time = xp.time")
 			.throwOnMappingFailure(false)
-			.addParameter("username", username)
 			.addParameter("time", time)
-			.executeAndFetchFirst(XpEntity.class);
+			.executeAndFetch(XpEntity.class)
+			.stream()
+			.collect(Collectors.toMap(XpEntity::getPlayer, xpEntity -> XpSnapshot.of(XpMapper.INSTANCE.xpEntityToXpData(xpEntity))));
 	}
 
-	public XpEntity findXpAtTime(String username, Instant time)
+	public XpData findXpAtTime(String username, Instant time)
 	{
 		try (Connection con = sql2o.open())
 		{
-			return findXpAtTime(con, username, time);
+			if (storage == XpStorage.DELTA)
+			{
+				Collection<PlayerEntity> players = findPlayers(con, Collections.singleton(username)).values();
+				XpSnapshot snapshot = findXpAtTime(con, players, time, false).values().stream()
+					.findFirst()
+					.orElse(null);
+				return snapshot != null ? snapshot.toXpData() : null;
+			}
+
+			XpEntity xpEntity = con.createQuery("select * from xp join player on player.id=xp.player where player.name = :username and time <= :time order by time desc limit 1")
+				.throwOnMappingFailure(false)
+				.addParameter("username", username)
+				.addParameter("time", time)
+				.executeAndFetchFirst(XpEntity.class);
+			return XpMapper.INSTANCE.xpEntityToXpData(xpEntity);
 		}
 	}
 
-	@Scheduled(fixedDelay = 1000)
-	public void update() throws ExecutionException
+	/**
+	 * Get the xp players gained between two times. Players with no xp
+	 * tracked before the start are measured from when they were first
+	 * tracked.
+	 *
+	 * @return the xp gained by each player, keyed by username. Ranks are not
+	 * set.
+	 */
+	public Map<String, XpData> getGains(Collection<String> usernames, Instant start, Instant end)
 	{
-		String next;
-		synchronized (usernameUpdateQueue)
+		Map<String, XpData> gains = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		try (Connection con = sql2o.open())
 		{
-			next = usernameUpdateQueue.poll();
+			Map<String, PlayerEntity> players = findPlayers(con, usernames);
+			if (players.isEmpty())
+			{
+				return gains;
+			}
+
+			Map<Integer, XpSnapshot> startXp;
+			Map<Integer, XpSnapshot> endXp;
+			if (storage == XpStorage.DELTA)
+			{
+				// xp never goes down, so the xp at a time is the most xp
+				// recorded up to then
+				String ids = players.values().stream()
+					.map(player -> player.getId().toString())
+					.collect(Collectors.joining(","));
+				List<XpSkillEntity> skills = con.createQuery("select player, skill, max(xp) - coalesce(max(case when time <= :start then xp end), min(xp)) as xp "
+					+ "from xp_skill where player in (" + ids + ") and time <= :end and xp >= 0 group by player, skill")
+					.addParameter("start", start)
+					.addParameter("end", end)
+					.executeAndFetch(XpSkillEntity.class);
+
+				startXp = Collections.emptyMap();
+				endXp = new HashMap<>();
+				for (XpSkillEntity skill : skills)
+				{
+					endXp.computeIfAbsent(skill.getPlayer(), player -> new XpSnapshot())
+						.apply(skill);
+				}
+			}
+			else
+			{
+				startXp = new HashMap<>(findXpAtTime(con, players.values(), end, true));
+				startXp.putAll(findXpAtTime(con, players.values(), start, false));
+				endXp = findXpAtTime(con, players.values(), end, false);
+			}
+
+			for (PlayerEntity player : players.values())
+			{
+				XpSnapshot snapshot = endXp.get(player.getId());
+				if (snapshot == null)
+				{
+					continue;
+				}
+
+				XpSnapshot gained = snapshot.minus(startXp.get(player.getId()));
+				gained.time = end;
+				gains.put(player.getName(), gained.toXpData());
+			}
 		}
+		return gains;
+	}
+
+	/**
+	 * Get the players who gained the most xp in a skill between two days
+	 *
+	 * @return the xp gained by each player, keyed by username, most gained
+	 * first
+	 */
+	public Map<String, Long> getTopGains(HiscoreSkill skill, Instant start, Instant end, int limit)
+	{
+		checkSkill(skill);
 
-		if (next == null)
+		try (Connection con = sql2o.open())
 		{
-			return;
+			Table table = con.createQuery("select player.name as name, sum(gained) as gained from xp_gain join player on player.id = xp_gain.player "
+				+ "where skill = :skill and day >= :start and day <= :end group by player.name order by gained desc limit :limit")
+				.addParameter("skill", skill.ordinal())
+				.addParameter("start", toDay(start))
+				.addParameter("end", toDay(end))
+				.addParameter("limit", limit)
+				.executeAndFetchTable();
+
+			Map<String, Long> gains = new LinkedHashMap<>();
+			for (Row row : table.rows())
+			{
+				gains.put(row.getString("name"), row.getLong("gained"));
+			}
+			return gains;
+		}
+	}
+
+	/**
+	 * Get the xp a player gained in a skill each day between two days
+	 *
+	 * @return the xp gained, keyed by day. Days with no xp gained are omitted.
+	 */
+	public Map<LocalDate, Long> getGainHistory(String username, HiscoreSkill skill, Instant start, Instant end)
+	{
+		checkSkill(skill);
+
+		try (Connection con = sql2o.open())
+		{
+			Table table = con.createQuery("select day, gained from xp_gain join player on player.id = xp_gain.player "
+				+ "where player.name = :username and skill = :skill and day >= :start and day <= :end order by day")
+				.addParameter("username", username)
+				.addParameter("skill", skill.ordinal())
+				.addParameter("start", toDay(start))
+				.addParameter("end", toDay(end))
+				.executeAndFetchTable();
+
+			Map<LocalDate, Long> gains = new LinkedHashMap<>();
+			for (Row row : table.rows())
+			{
+				gains.put(new Date(row.getDate("day").getTime()).toLocalDate(), row.getLong("gained"));
+			}
+			return gains;
+		}
+	}
+
+	private static void checkSkill(HiscoreSkill skill)
+	{
+		if (skill.ordinal() >= XpSnapshot.SKILLS)
+		{
+			throw new IllegalArgumentException("Xp is not tracked for " + skill.getName());
 		}
+	}
 
-		update(next);
+	/**
+	 * The day of the rollup a time falls in
+	 */
+	private static Date toDay(Instant time)
+	{
+		return Date.valueOf(time.atOffset(ZoneOffset.UTC).toLocalDate());
 	}
 
-	@Scheduled(fixedDelay = 6 * 60 * 60 * 1000) // 6 hours
-	public void clearFilter()
+	@VisibleForTesting
+	int getQueuedUpdates()
 	{
-		usernameFilter = createFilter();
+		return updateQueue.size();
 	}
 
-	private BloomFilter<String> createFilter()
+	@Data
+	private static class PendingUpdate implements Comparable<PendingUpdate>
 	{
-		final BloomFilter<String> filter = BloomFilter.create(
-			Funnels.stringFunnel(Charset.defaultCharset()),
-			BLOOMFILTER_EXPECTED_INSERTIONS
-		);
+		private final String username;
+		private final Instant due;
 
-		synchronized (usernameUpdateQueue)
+		@Override
+		public int compareTo(PendingUpdate other)
 		{
-			for (String toUpdate : usernameUpdateQueue)
-			{
-				filter.put(toUpdate);
-			}
+			return due.compareTo(other.due);
 		}
+	}
 
-		return filter;
+	@Data
+	private static class HiscoreUpdate
+	{
+		private final String username;
+		private final HiscoreResult hiscoreResult;
 	}
 
 	/**
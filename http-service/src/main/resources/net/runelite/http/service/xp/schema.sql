@@ -122,6 +122,42 @@ CREATE TABLE `xp` (
   CONSTRAINT `fk_player` FOREIGN KEY (`player`) REFERENCES `player` (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `xp_skill`
+--
+
+DROP TABLE IF EXISTS `xp_skill`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `xp_skill` (
+  `player` int(11) NOT NULL,
+  `skill` tinyint(4) NOT NULL,
+  `time` timestamp NOT NULL DEFAULT current_timestamp(),
+  `xp` bigint(20) NOT NULL,
+  `rank` int(11) NOT NULL,
+  PRIMARY KEY (`player`,`skill`,`time`),
+  CONSTRAINT `fk_xp_skill_player` FOREIGN KEY (`player`) REFERENCES `player` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `xp_gain`
+--
+
+DROP TABLE IF EXISTS `xp_gain`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `xp_gain` (
+  `player` int(11) NOT NULL,
+  `skill` tinyint(4) NOT NULL,
+  `day` date NOT NULL,
+  `gained` bigint(20) NOT NULL,
+  PRIMARY KEY (`player`,`skill`,`day`),
+  KEY `skill_day` (`skill`,`day`),
+  CONSTRAINT `fk_xp_gain_player` FOREIGN KEY (`player`) REFERENCES `player` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
 /*!40103 SET TIME_ZONE=@OLD_TIME_ZONE */;
 
 /*!40101 SET SQL_MODE=@OLD_SQL_MODE */;
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import java.util.Collections;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(CacheController.class)
+@ActiveProfiles("test")
+public class CacheControllerTest
+{
+	private static final byte[] DATA = {0, 0, 0, 0, 1, 42};
+	private static final String ETAG = "\"0102030405\"";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private CacheService cacheService;
+
+	@MockBean
+	private DefinitionService definitionService;
+
+	@MockBean
+	private ItemImageService itemImageService;
+
+	private ArchiveEntry archiveEntry;
+
+	@Before
+	public void before()
+	{
+		archiveEntry = new ArchiveEntry();
+		archiveEntry.setArchiveId(7);
+		archiveEntry.setHash(new byte[]{1, 2, 3, 4, 5});
+
+		when(cacheService.findCache(anyInt())).thenReturn(new CacheEntry());
+		when(cacheService.findIndexForCache(any(CacheEntry.class), anyInt())).thenReturn(new IndexEntry());
+		when(cacheService.findArchiveForIndex(any(IndexEntry.class), eq(7))).thenReturn(archiveEntry);
+		when(cacheService.getArchive(archiveEntry)).thenReturn(DATA);
+	}
+
+	@Test
+	public void testGetArchiveData() throws Exception
+	{
+		mockMvc.perform(get("/cache/1/2/7/data"))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, ETAG))
+			.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"))
+			.andExpect(content().bytes(DATA));
+	}
+
+	@Test
+	public void testGetArchiveDataNotModified() throws Exception
+	{
+		mockMvc.perform(get("/cache/1/2/7/data").header(HttpHeaders.IF_NONE_MATCH, ETAG))
+			.andExpect(status().isNotModified())
+			.andExpect(header().string(HttpHeaders.ETAG, ETAG));
+
+		verify(cacheService, never()).getArchive(any(ArchiveEntry.class));
+	}
+
+	@Test
+	public void testGetArchiveDataModified() throws Exception
+	{
+		mockMvc.perform(get("/cache/1/2/7/data").header(HttpHeaders.IF_NONE_MATCH, "\"ffff\""))
+			.andExpect(status().isOk())
+			.andExpect(content().bytes(DATA));
+	}
+
+	@Test
+	public void testGetItem() throws Exception
+	{
+		mockMvc.perform(get("/cache/item/4151"))
+			.andExpect(status().isNotFound());
+
+		verify(definitionService).getItem(4151);
+	}
+
+	@Test
+	public void testGetItemImages() throws Exception
+	{
+		when(itemImageService.getItemImages(any(int[].class), eq(1), eq(1), eq(3153952)))
+			.thenReturn(Collections.singletonMap(4151, new byte[]{1, 2, 3}));
+
+		mockMvc.perform(get("/cache/item/image").param("id", "4151", "995"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.4151").value("AQID"));
+
+		verify(itemImageService).getItemImages(aryEq(new int[]{4151, 995}), eq(1), eq(1), eq(3153952));
+	}
+}
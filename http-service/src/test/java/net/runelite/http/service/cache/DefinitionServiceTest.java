@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefinitionServiceTest
+{
+	private CacheService cacheService;
+	private DefinitionService definitionService;
+
+	@Before
+	public void before() throws Exception
+	{
+		cacheService = mock(CacheService.class);
+
+		CacheEntry cache = new CacheEntry();
+		cache.setId(1);
+		when(cacheService.findMostRecent()).thenReturn(cache);
+		when(cacheService.findIndexForCache(any(CacheEntry.class), anyInt())).thenReturn(new IndexEntry());
+
+		for (ConfigType configType : new ConfigType[]{ConfigType.ITEM, ConfigType.OBJECT, ConfigType.NPC})
+		{
+			ArchiveEntry archiveEntry = new ArchiveEntry();
+			archiveEntry.setArchiveId(configType.getId());
+			when(cacheService.findArchiveForIndex(any(IndexEntry.class), eq(configType.getId()))).thenReturn(archiveEntry);
+			when(cacheService.getArchiveFiles(archiveEntry)).thenReturn(archiveFiles(0, 5));
+		}
+
+		definitionService = new DefinitionService(cacheService);
+	}
+
+	private static ArchiveFiles archiveFiles(int... ids)
+	{
+		ArchiveFiles archiveFiles = new ArchiveFiles();
+		for (int id : ids)
+		{
+			FSFile file = new FSFile(id);
+			// a definition with no opcodes
+			file.setContents(new byte[]{0});
+			archiveFiles.addFile(file);
+		}
+		return archiveFiles;
+	}
+
+	@Test
+	public void testLookup() throws Exception
+	{
+		assertEquals(5, definitionService.getItem(5).getId());
+		assertEquals(5, definitionService.getObject(5).getId());
+		assertEquals(5, definitionService.getNpc(5).getId());
+		assertNotNull(definitionService.getItem(0));
+		assertNull(definitionService.getItem(3));
+		assertNull(definitionService.getItem(6));
+		assertNull(definitionService.getItem(-1));
+
+		// each config archive is only decoded once
+		verify(cacheService, times(3)).getArchiveFiles(any(ArchiveEntry.class));
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ItemImageServiceTest
+{
+	private static final int GOOD_MODEL = 1;
+	private static final int BAD_MODEL = 2;
+
+	private CacheService cacheService;
+	private ItemImageService itemImageService;
+	private ArchiveEntry badModel;
+
+	@Before
+	public void before() throws Exception
+	{
+		cacheService = mock(CacheService.class);
+
+		CacheEntry cache = new CacheEntry();
+		cache.setId(1);
+		when(cacheService.findMostRecent()).thenReturn(cache);
+
+		IndexEntry configs = index(IndexType.CONFIGS);
+		IndexEntry models = index(IndexType.MODELS);
+		index(IndexType.SPRITES);
+		IndexEntry textures = index(IndexType.TEXTURES);
+
+		ArchiveEntry items = archive(configs, ConfigType.ITEM.getId());
+		ArchiveFiles itemFiles = new ArchiveFiles();
+		// items 1 and 2 use models 1 and 2
+		itemFiles.addFile(item(1, GOOD_MODEL));
+		itemFiles.addFile(item(2, BAD_MODEL));
+		when(cacheService.getArchiveFiles(items)).thenReturn(itemFiles);
+
+		when(cacheService.getArchiveFiles(archive(textures, 0))).thenReturn(new ArchiveFiles());
+
+		// a model with no vertices or faces
+		Container container = new Container(CompressionType.NONE, -1);
+		container.compress(new byte[18], null);
+		when(cacheService.getArchive(archive(models, GOOD_MODEL))).thenReturn(container.data);
+
+		// a gzip container whose data is not gzip, which fails to decompress
+		ByteBuffer corrupt = ByteBuffer.allocate(19);
+		corrupt.put((byte) CompressionType.GZ).putInt(10).putInt(16);
+		badModel = archive(models, BAD_MODEL);
+		when(cacheService.getArchive(badModel)).thenReturn(corrupt.array());
+
+		itemImageService = new ItemImageService(cacheService);
+	}
+
+	@After
+	public void after()
+	{
+		itemImageService.shutdown();
+	}
+
+	private IndexEntry index(IndexType indexType) throws IOException
+	{
+		IndexEntry indexEntry = new IndexEntry();
+		indexEntry.setIndexId(indexType.getNumber());
+		when(cacheService.findIndexForCache(any(CacheEntry.class), eq(indexType.getNumber()))).thenReturn(indexEntry);
+		return indexEntry;
+	}
+
+	private ArchiveEntry archive(IndexEntry indexEntry, int archiveId)
+	{
+		ArchiveEntry archiveEntry = new ArchiveEntry();
+		archiveEntry.setId(indexEntry.getIndexId() << 16 | archiveId);
+		archiveEntry.setArchiveId(archiveId);
+		when(cacheService.findArchiveForIndex(indexEntry, archiveId)).thenReturn(archiveEntry);
+		return archiveEntry;
+	}
+
+	private static FSFile item(int id, int model)
+	{
+		FSFile file = new FSFile(id);
+		// inventory model opcode, then the end of the definition
+		file.setContents(new byte[]{1, (byte) (model >> 8), (byte) model, 0});
+		return file;
+	}
+
+	@Test
+	public void testModelLoadFailure() throws Exception
+	{
+		Map<Integer, byte[]> images = itemImageService.getItemImages(new int[]{1, 2}, 1, 1, 0);
+		assertEquals(1, images.size());
+		assertTrue(images.get(1).length > 0);
+		assertFalse(images.containsKey(2));
+
+		// the failure is not cached, so the model is loaded again
+		itemImageService.getItemImages(new int[]{1, 2}, 1, 1, 0);
+		verify(cacheService, times(2)).getArchive(badModel);
+	}
+}
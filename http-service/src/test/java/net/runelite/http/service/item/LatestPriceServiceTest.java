@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import net.runelite.http.api.item.ItemPrice;
+import net.runelite.http.api.item.ItemPriceDelta;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LatestPriceServiceTest
+{
+	private static final Instant NOW = Instant.now();
+
+	private ItemService itemService;
+	private LatestPriceService latestPriceService;
+
+	@Before
+	public void before()
+	{
+		itemService = mock(ItemService.class);
+		when(itemService.fetchPrices()).thenReturn(Arrays.asList(
+			price(1, 100, NOW.minusSeconds(60)),
+			price(5, 500, NOW.minusSeconds(60))
+		));
+
+		latestPriceService = new LatestPriceService(itemService);
+	}
+
+	private static PriceEntry price(int item, int price, Instant time)
+	{
+		PriceEntry priceEntry = new PriceEntry();
+		priceEntry.setItem(item);
+		priceEntry.setName("item " + item);
+		priceEntry.setPrice(price);
+		priceEntry.setTime(time);
+		priceEntry.setFetched_time(time);
+		return priceEntry;
+	}
+
+	@Test
+	public void testGetPrices()
+	{
+		assertEquals(100, latestPriceService.getPrice(1).getPrice());
+		assertNull(latestPriceService.getPrice(2));
+		assertNull(latestPriceService.getPrice(100));
+
+		ItemPrice[] prices = latestPriceService.getPrices(new int[]{5, 1, 5, 3, -1});
+		assertEquals(2, prices.length);
+		assertEquals(5, prices[0].getId());
+		assertEquals(1, prices[1].getId());
+
+		// loaded once
+		verify(itemService, times(1)).fetchPrices();
+	}
+
+	@Test
+	public void testRefresh()
+	{
+		latestPriceService.getPrice(1);
+
+		when(itemService.fetchPricesSince(any(Instant.class))).thenReturn(Arrays.asList(
+			price(1, 90, NOW.minusSeconds(120)), // older than the known price
+			price(5, 550, NOW),
+			price(10, 1000, NOW)
+		));
+		latestPriceService.refresh();
+
+		assertEquals(100, latestPriceService.getPrice(1).getPrice());
+		assertEquals(550, latestPriceService.getPrice(5).getPrice());
+		assertEquals(1000, latestPriceService.getPrice(10).getPrice());
+
+		when(itemService.fetchPricesSince(any(Instant.class))).thenReturn(Collections.emptyList());
+		latestPriceService.refresh();
+		assertEquals(1000, latestPriceService.getPrice(10).getPrice());
+	}
+
+	@Test
+	public void testDelta()
+	{
+		ItemPriceDelta full = latestPriceService.getDelta(null);
+		assertTrue(full.isFull());
+		assertEquals(2, full.getPrices().length);
+
+		// the same prices fetched again don't create a new version
+		when(itemService.fetchPricesSince(any(Instant.class))).thenReturn(Collections.singletonList(
+			price(1, 100, NOW.minusSeconds(60))
+		));
+		latestPriceService.refresh();
+		assertEquals(full.getVersion(), latestPriceService.getVersion());
+
+		when(itemService.fetchPricesSince(any(Instant.class))).thenReturn(Arrays.asList(
+			price(1, 100, NOW.minusSeconds(60)),
+			price(5, 550, NOW)
+		));
+		latestPriceService.refresh();
+		assertNotEquals(full.getVersion(), latestPriceService.getVersion());
+
+		ItemPriceDelta delta = latestPriceService.getDelta(full.getVersion());
+		assertFalse(delta.isFull());
+		assertEquals(latestPriceService.getVersion(), delta.getVersion());
+		assertEquals(1, delta.getPrices().length);
+		assertEquals(550, delta.getPrices()[0].getPrice());
+
+		assertEquals(0, latestPriceService.getDelta(delta.getVersion()).getPrices().length);
+
+		// versions from another instance get every price
+		assertTrue(latestPriceService.getDelta("0-1").isFull());
+		assertTrue(latestPriceService.getDelta("garbage").isFull());
+	}
+}
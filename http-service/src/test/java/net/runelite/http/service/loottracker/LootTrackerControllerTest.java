@@ -41,6 +41,7 @@ import org.junit.runner.RunWith;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -89,4 +90,14 @@ public class LootTrackerControllerTest
 
 		verify(lootTrackerService).store(eq(Collections.singletonList(lootRecord)), anyInt());
 	}
+
+	@Test
+	public void storeInvalidLootRecord() throws Exception
+	{
+		doThrow(new IllegalArgumentException()).when(lootTrackerService).store(any(), anyInt());
+
+		String data = RuneLiteAPI.GSON.toJson(Collections.singletonList(new LootRecord()));
+		mockMvc.perform(post("/loottracker").content(data).contentType(MediaType.APPLICATION_JSON))
+			.andExpect(status().isBadRequest());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.loottracker;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import net.runelite.http.api.loottracker.GameItem;
+import net.runelite.http.api.loottracker.LootRecord;
+import net.runelite.http.api.loottracker.LootRecordType;
+import net.runelite.http.service.util.InstantConverter;
+import net.runelite.http.service.util.WriteBehindBuffer;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+import org.sql2o.converters.Converter;
+import org.sql2o.quirks.NoQuirks;
+
+public class LootWriterTest
+{
+	private Sql2o sql2o;
+
+	@Before
+	public void before()
+	{
+		Map<Class, Converter> converters = new HashMap<>();
+		converters.put(Instant.class, new InstantConverter());
+		sql2o = new Sql2o("jdbc:h2:mem:loottracker-test;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", new NoQuirks(converters));
+
+		try (Connection con = sql2o.open())
+		{
+			con.createQuery("create table kills (id int auto_increment primary key, time timestamp not null, accountId int not null, "
+				+ "type varchar(16) not null, eventId varchar(255) not null)").executeUpdate();
+			con.createQuery("create table drops (killId int not null, itemId int not null, itemQuantity int not null, "
+				+ "foreign key (killId) references kills(id))").executeUpdate();
+		}
+	}
+
+	@After
+	public void after()
+	{
+		try (Connection con = sql2o.open())
+		{
+			con.createQuery("drop all objects").executeUpdate();
+		}
+	}
+
+	private static PendingKill kill(int accountId, String eventId, GameItem... drops)
+	{
+		return new PendingKill(accountId, new LootRecord(eventId, LootRecordType.NPC, Arrays.asList(drops), null), Instant.now());
+	}
+
+	@Test
+	public void testWrite()
+	{
+		WriteBehindBuffer<PendingKill> buffer = new WriteBehindBuffer<>("test", new LootWriter(sql2o), 100, 1000, 60_000);
+		buffer.offer(kill(1, "Goblin", new GameItem(526, 1), new GameItem(995, 5)));
+		buffer.offer(kill(2, "Cow", new GameItem(1739, 1)));
+		buffer.offer(kill(1, "Imp"));
+		buffer.close();
+
+		assertEquals(3, buffer.getStats().getWritten());
+		assertEquals(1, buffer.getStats().getBatches());
+
+		try (Connection con = sql2o.open())
+		{
+			assertEquals(Integer.valueOf(2), con.createQuery("select count(*) from kills where accountId = 1").executeScalar(Integer.class));
+			assertEquals(Integer.valueOf(3), con.createQuery("select count(*) from drops").executeScalar(Integer.class));
+			assertEquals(Integer.valueOf(1739), con.createQuery("select itemId from drops join kills on kills.id = drops.killId where eventId = 'Cow'")
+				.executeScalar(Integer.class));
+		}
+	}
+}
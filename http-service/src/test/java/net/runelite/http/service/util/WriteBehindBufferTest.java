@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class WriteBehindBufferTest
+{
+	private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+	@Test
+	public void testBatchSize() throws InterruptedException
+	{
+		List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch latch = new CountDownLatch(1);
+		try (WriteBehindBuffer<Integer> buffer = new WriteBehindBuffer<>("test", batch ->
+		{
+			batches.add(new ArrayList<>(batch));
+			latch.countDown();
+		}, 4, 16, NEVER))
+		{
+			for (int i = 0; i < 3; ++i)
+			{
+				assertTrue(buffer.offer(i));
+			}
+			assertTrue(batches.isEmpty());
+
+			// a full batch is written without waiting for the interval
+			buffer.offer(3);
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			assertEquals(Collections.singletonList(0), batches.get(0).subList(0, 1));
+
+			buffer.offer(4);
+		}
+
+		// closing writes the rest
+		assertEquals(5, batches.stream().mapToInt(List::size).sum());
+	}
+
+	@Test
+	public void testLoss()
+	{
+		WriteBehindBuffer<Integer> buffer = new WriteBehindBuffer<>("test", batch ->
+		{
+			throw new RuntimeException("write failed");
+		}, 8, 2, NEVER);
+
+		assertTrue(buffer.offer(1));
+		assertTrue(buffer.offer(2));
+		assertFalse(buffer.offer(3));
+
+		buffer.close();
+
+		WriteBehindBuffer.Stats stats = buffer.getStats();
+		assertEquals(2, stats.getAccepted());
+		assertEquals(1, stats.getDropped());
+		assertEquals(2, stats.getFailed());
+		assertEquals(0, stats.getWritten());
+		assertEquals(3, stats.getLost());
+		assertEquals(0, stats.getPending());
+	}
+
+	@Test
+	public void testRetry()
+	{
+		List<Integer> written = new ArrayList<>();
+		WriteBehindBuffer<Integer> buffer = new WriteBehindBuffer<>("test", batch ->
+		{
+			if (batch.contains(2))
+			{
+				throw new RuntimeException("write failed");
+			}
+			written.addAll(batch);
+		}, 8, 8, NEVER);
+
+		buffer.offer(1);
+		buffer.offer(2);
+		buffer.offer(3);
+		buffer.close();
+
+		// only the bad item of the failed batch is lost
+		assertEquals(2, written.size());
+		assertFalse(written.contains(2));
+
+		WriteBehindBuffer.Stats stats = buffer.getStats();
+		assertEquals(2, stats.getWritten());
+		assertEquals(1, stats.getFailed());
+	}
+
+	@Test
+	public void testRemove()
+	{
+		List<Integer> written = new ArrayList<>();
+		WriteBehindBuffer<Integer> buffer = new WriteBehindBuffer<>("test", written::addAll, 8, 8, NEVER);
+		buffer.offer(1);
+		buffer.offer(2);
+		buffer.offer(3);
+		buffer.removeIf(i -> i == 2);
+		buffer.close();
+
+		assertEquals(2, written.size());
+		assertFalse(written.contains(2));
+	}
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import net.runelite.http.api.hiscore.HiscoreClient;
+import net.runelite.http.api.hiscore.HiscoreEndpoint;
+import net.runelite.http.api.hiscore.HiscoreResult;
+import net.runelite.http.api.hiscore.HiscoreResultBuilder;
+import net.runelite.http.api.hiscore.HiscoreSkill;
+import net.runelite.http.api.hiscore.Skill;
+import net.runelite.http.api.xp.XpData;
+import net.runelite.http.service.hiscore.HiscoreService;
+import net.runelite.http.service.util.InstantConverter;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+import org.sql2o.converters.Converter;
+import org.sql2o.quirks.NoQuirks;
+
+public class XpTrackerServiceTest
+{
+	private static final String RESPONSE = "654683,705,1304518\n"
+		+ "679419,50,107181\n"
+		+ "550667,48,85764\n"
+		+ "861497,50,101366\n"
+		+ "891591,48,87843\n"
+		+ "-1,1,4\n"
+		+ "840255,27,10073\n"
+		+ "1371912,10,1310\n"
+		+ "432193,56,199795\n"
+		+ "495638,56,198304\n"
+		+ "514466,37,27502\n"
+		+ "456981,54,159727\n"
+		+ "459159,49,93010\n"
+		+ "1028855,8,823\n"
+		+ "862906,29,12749\n"
+		+ "795020,31,16097\n"
+		+ "673591,5,495\n"
+		+ "352676,51,112259\n"
+		+ "428419,40,37235\n"
+		+ "461887,43,51971\n"
+		+ "598582,1,10\n"
+		+ "638177,1,0\n"
+		+ "516239,9,1000\n"
+		+ "492790,1,0\n"
+		+ "-1,-1\n"
+		+ "73,1738\n"
+		+ "-1,-1\n"
+		+ "531,1432\n"
+		+ "324,212\n"
+		+ "8008,131\n"
+		+ "1337,911\n"
+		+ "42,14113\n"
+		+ "1,777\n"
+		+ "254,92\n";
+
+	private static final String CREATE_PLAYER = "create table player (id int auto_increment primary key, name varchar(32) not null unique, "
+		+ "tracked_since timestamp not null default current_timestamp(), last_updated timestamp not null default current_timestamp(), rank int)";
+
+	private static final String CREATE_XP_SKILL = "create table xp_skill (player int not null, skill tinyint not null, time timestamp not null, "
+		+ "xp bigint not null, rank int not null, primary key (player, skill, time))";
+
+	private static final String CREATE_XP_GAIN = "create table xp_gain (player int not null, skill tinyint not null, day date not null, "
+		+ "gained bigint not null, primary key (player, skill, day))";
+
+	private final MockWebServer server = new MockWebServer();
+	private Sql2o sql2o;
+	private HiscoreService hiscoreService;
+	private XpTrackerService xpTrackerService;
+
+	@Before
+	public void before() throws IOException
+	{
+		// stub hiscore endpoint
+		server.setDispatcher(new Dispatcher()
+		{
+			@Override
+			public MockResponse dispatch(RecordedRequest request)
+			{
+				return new MockResponse().setBody(RESPONSE);
+			}
+		});
+		server.start();
+
+		Map<Class, Converter> converters = new HashMap<>();
+		converters.put(Instant.class, new InstantConverter());
+		sql2o = new Sql2o("jdbc:h2:mem:xptracker-test;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", new NoQuirks(converters));
+
+		try (Connection con = sql2o.open())
+		{
+			con.createQuery(CREATE_PLAYER).executeUpdate();
+			con.createQuery(createXp()).executeUpdate();
+			con.createQuery(CREATE_XP_SKILL).executeUpdate();
+			con.createQuery(CREATE_XP_GAIN).executeUpdate();
+		}
+
+		HttpUrl url = server.url("/");
+		hiscoreService = new HiscoreService()
+		{
+			private final HiscoreClient hiscoreClient = new HiscoreClient();
+
+			@Override
+			public HiscoreResult lookupUsername(String username, HiscoreEndpoint endpoint) throws ExecutionException
+			{
+				try
+				{
+					return hiscoreClient.lookup(username, url);
+				}
+				catch (IOException ex)
+				{
+					throw new ExecutionException(ex);
+				}
+			}
+		};
+
+		xpTrackerService = new XpTrackerService(sql2o, hiscoreService, 100, 2, XpStorage.FULL);
+	}
+
+	@After
+	public void after() throws IOException
+	{
+		xpTrackerService.shutdown();
+		server.shutdown();
+
+		try (Connection con = sql2o.open())
+		{
+			con.createQuery("drop all objects").executeUpdate();
+		}
+	}
+
+	private static String createXp()
+	{
+		StringBuilder sb = new StringBuilder("create table xp (id int auto_increment primary key, time timestamp not null default current_timestamp(), player int not null");
+		for (String skill : new String[]{"attack", "defence", "strength", "hitpoints", "ranged", "prayer", "magic", "cooking", "woodcutting",
+			"fletching", "fishing", "firemaking", "crafting", "smithing", "mining", "herblore", "agility", "thieving", "slayer", "farming",
+			"runecraft", "hunter", "construction"})
+		{
+			sb.append(", ").append(skill).append("_xp int not null, ").append(skill).append("_rank int not null");
+		}
+		return sb.append(", overall_rank int not null)").toString();
+	}
+
+	@Test
+	public void testUpdate() throws InterruptedException
+	{
+		xpTrackerService.tryUpdate("zezima");
+		xpTrackerService.tryUpdate("lynx titan");
+		xpTrackerService.tryUpdate("zezima");
+		xpTrackerService.queueUpdates();
+
+		for (int i = 0; i < 100 && (countXp() < 2); ++i)
+		{
+			Thread.sleep(50);
+			xpTrackerService.flush();
+		}
+
+		assertEquals(2, countXp());
+		assertEquals(2, server.getRequestCount());
+
+		try (Connection con = sql2o.open())
+		{
+			assertEquals(Integer.valueOf(654683), con.createQuery("select rank from player where name = 'zezima'").executeScalar(Integer.class));
+		}
+
+		// recently updated players aren't looked up again
+		xpTrackerService.tryUpdate("zezima");
+		xpTrackerService.queueUpdates();
+		assertEquals(0, xpTrackerService.getQueuedUpdates());
+	}
+
+	@Test
+	public void testUnchangedHiscore() throws IOException
+	{
+		HiscoreResult hiscoreResult = new HiscoreClient().lookup("zezima", server.url("/"));
+		xpTrackerService.update("zezima", hiscoreResult);
+		xpTrackerService.flush();
+		xpTrackerService.update("zezima", hiscoreResult);
+		xpTrackerService.flush();
+
+		assertEquals(1, countXp());
+	}
+
+	@Test
+	public void testDeltaStorage() throws IOException
+	{
+		xpTrackerService.shutdown();
+		xpTrackerService = new XpTrackerService(sql2o, hiscoreService, 100, 2, XpStorage.DELTA);
+
+		Instant start = Instant.now().minusSeconds(1);
+		HiscoreResult hiscoreResult = new HiscoreClient().lookup("zezima", server.url("/"));
+		xpTrackerService.update("zezima", hiscoreResult);
+		xpTrackerService.flush();
+		assertEquals(XpSnapshot.SKILLS, count("xp_skill"));
+
+		// nothing is written if no xp has changed
+		xpTrackerService.update("zezima", hiscoreResult);
+		xpTrackerService.flush();
+		assertEquals(XpSnapshot.SKILLS, count("xp_skill"));
+
+		// only attack and overall change
+		HiscoreResult gainedResult = gain(hiscoreResult, HiscoreSkill.ATTACK, 1000);
+		xpTrackerService.update("zezima", gainedResult);
+		xpTrackerService.flush();
+		assertEquals(XpSnapshot.SKILLS + 2, count("xp_skill"));
+
+		XpData xpData = xpTrackerService.findXpAtTime("zezima", Instant.now());
+		assertEquals(gainedResult.getAttack().getExperience(), xpData.getAttack_xp());
+		assertEquals(hiscoreResult.getFishing().getExperience(), xpData.getFishing_xp());
+		assertEquals(hiscoreResult.getFishing().getRank(), xpData.getFishing_rank());
+
+		assertGains(start);
+	}
+
+	@Test
+	public void testFullStorageGains() throws IOException
+	{
+		Instant start = Instant.now().minusSeconds(1);
+		HiscoreResult hiscoreResult = new HiscoreClient().lookup("zezima", server.url("/"));
+		xpTrackerService.update("zezima", hiscoreResult);
+		xpTrackerService.flush();
+		xpTrackerService.update("zezima", gain(hiscoreResult, HiscoreSkill.ATTACK, 1000));
+		xpTrackerService.flush();
+		assertEquals(2, countXp());
+
+		assertGains(start);
+	}
+
+	private void assertGains(Instant start)
+	{
+		Instant end = Instant.now();
+
+		Map<String, XpData> gains = xpTrackerService.getGains(Arrays.asList("zezima", "unknown"), start, end);
+		assertEquals(1, gains.size());
+		assertEquals(1000, gains.get("zezima").getAttack_xp());
+		assertEquals(0, gains.get("zezima").getFishing_xp());
+
+		// the first snapshot is the baseline for players tracked after the start
+		assertEquals(1000, xpTrackerService.getGains(Collections.singletonList("zezima"), end.minusSeconds(3600), end)
+			.get("zezima").getAttack_xp());
+
+		assertEquals(Collections.singletonMap("zezima", 1000L), xpTrackerService.getTopGains(HiscoreSkill.ATTACK, start, end, 10));
+		assertEquals(Collections.singletonMap("zezima", 1000L), xpTrackerService.getTopGains(HiscoreSkill.OVERALL, start, end, 10));
+		assertEquals(Collections.emptyMap(), xpTrackerService.getTopGains(HiscoreSkill.FISHING, start, end, 10));
+
+		Map<LocalDate, Long> history = xpTrackerService.getGainHistory("zezima", HiscoreSkill.ATTACK, start, end);
+		assertEquals(1, history.size());
+		assertEquals(Long.valueOf(1000L), history.values().iterator().next());
+	}
+
+	private static HiscoreResult gain(HiscoreResult hiscoreResult, HiscoreSkill gainedSkill, long xp)
+	{
+		HiscoreResultBuilder builder = new HiscoreResultBuilder();
+		for (HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+		{
+			Skill skill = hiscoreResult.getSkill(hiscoreSkill);
+			if (hiscoreSkill == gainedSkill || hiscoreSkill == HiscoreSkill.OVERALL)
+			{
+				skill = new Skill(skill.getRank(), skill.getLevel(), skill.getExperience() + xp);
+			}
+			builder.setNextSkill(skill);
+		}
+		return builder.build();
+	}
+
+	private int countXp()
+	{
+		return count("xp");
+	}
+
+	private int count(String table)
+	{
+		try (Connection con = sql2o.open())
+		{
+			return con.createQuery("select count(*) from " + table).executeScalar(Integer.class);
+		}
+	}
+}
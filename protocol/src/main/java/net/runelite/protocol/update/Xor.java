@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.protocol.update;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Xor of buffers with a single byte key, done a long at a time
+ */
+public final class Xor
+{
+	private Xor()
+	{
+	}
+
+	private static long expand(byte key)
+	{
+		return (key & 0xffL) * 0x0101010101010101L;
+	}
+
+	/**
+	 * Xor a region of a buffer in place
+	 */
+	public static void xor(ByteBuf buf, int index, int length, byte key)
+	{
+		long key64 = expand(key);
+		int end = index + length;
+
+		for (; index + 8 <= end; index += 8)
+		{
+			buf.setLong(index, buf.getLong(index) ^ key64);
+		}
+
+		for (; index < end; ++index)
+		{
+			buf.setByte(index, buf.getByte(index) ^ key);
+		}
+	}
+
+	/**
+	 * Xor the readable bytes of src into dst, reading all of src
+	 */
+	public static void xor(ByteBuf src, ByteBuf dst, byte key)
+	{
+		long key64 = expand(key);
+
+		dst.ensureWritable(src.readableBytes());
+
+		while (src.readableBytes() >= 8)
+		{
+			dst.writeLong(src.readLong() ^ key64);
+		}
+
+		while (src.isReadable())
+		{
+			dst.writeByte(src.readByte() ^ key);
+		}
+	}
+}
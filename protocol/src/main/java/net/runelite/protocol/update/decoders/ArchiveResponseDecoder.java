@@ -25,7 +25,6 @@
 package net.runelite.protocol.update.decoders;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import java.util.List;
@@ -40,6 +39,13 @@ public class ArchiveResponseDecoder extends ByteToMessageDecoder
 
 	private static final int CHUNK_SIZE = 512;
 
+	public ArchiveResponseDecoder()
+	{
+		// large archives arrive over many reads, composing them avoids
+		// copying the partial archive into a bigger buffer on every read
+		setCumulator(COMPOSITE_CUMULATOR);
+	}
+
 	@Override
 	public void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
 	{
@@ -75,7 +81,10 @@ public class ArchiveResponseDecoder extends ByteToMessageDecoder
 			return;
 		}
 
-		ByteBuf compressedData = Unpooled.buffer(size);
+		// chunks are copied straight from the network buffers into the
+		// result, skipping the chunk breaks
+		byte[] compressedData = new byte[size];
+		int written = 0;
 
 		int totalRead = 3;
 		in.skipBytes(3); // skip index/file
@@ -83,30 +92,29 @@ public class ArchiveResponseDecoder extends ByteToMessageDecoder
 		for (int i = 0; i < breaks + 1; ++i)
 		{
 			int bytesInBlock = CHUNK_SIZE - (totalRead % CHUNK_SIZE);
-			int bytesToRead = Math.min(bytesInBlock, size - compressedData.writerIndex());
+			int bytesToRead = Math.min(bytesInBlock, size - written);
 
 			logger.trace("{}/{}: reading block {}/{}, read so far this block: {}, file status: {}/{}",
 				index, file,
 				(totalRead % CHUNK_SIZE), CHUNK_SIZE,
 				bytesInBlock,
-				compressedData.writerIndex(), size);
+				written, size);
 
-			ByteBuf chunk = in.readBytes(bytesToRead);
-			compressedData.writeBytes(chunk);
-			chunk.release();
+			in.readBytes(compressedData, written, bytesToRead);
+			written += bytesToRead;
 
 			totalRead += bytesToRead;
 
 			if (i < breaks)
 			{
-				assert compressedData.writerIndex() < size;
+				assert written < size;
 				int b = in.readUnsignedByte();
 				++totalRead;
 				assert b == 0xff;
 			}
 		}
 
-		assert compressedData.writerIndex() == size;
+		assert written == size;
 
 		logger.trace("{}/{}: done downloading file, remaining buffer {}",
 			index, file,
@@ -115,10 +123,8 @@ public class ArchiveResponseDecoder extends ByteToMessageDecoder
 		ArchiveResponsePacket archiveResponse = new ArchiveResponsePacket();
 		archiveResponse.setIndex(index);
 		archiveResponse.setArchive(file);
-		archiveResponse.setData(compressedData.array());
+		archiveResponse.setData(compressedData);
 		out.add(archiveResponse);
-
-		compressedData.release();
 	}
 
 	/**
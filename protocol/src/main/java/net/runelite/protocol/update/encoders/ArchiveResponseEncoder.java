@@ -25,7 +25,6 @@
 package net.runelite.protocol.update.encoders;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import net.runelite.protocol.api.update.ArchiveResponsePacket;
@@ -41,46 +40,50 @@ public class ArchiveResponseEncoder extends MessageToByteEncoder<ArchiveResponse
 	@Override
 	protected void encode(ChannelHandlerContext ctx, ArchiveResponsePacket archiveResponse, ByteBuf out) throws Exception
 	{
+		byte[] data = archiveResponse.getData();
+		int size = encode(archiveResponse.getIndex(), archiveResponse.getArchive(), data, data.length, out);
+
+		logger.debug("Wrote index {} archive {} (size {}) in {} bytes",
+			archiveResponse.getIndex(), archiveResponse.getArchive(),
+			data.length, size);
+	}
+
+	/**
+	 * Write an archive response, splitting the data into chunks
+	 *
+	 * @param index
+	 * @param archive
+	 * @param data compressed archive data, starting with the compression
+	 * type and length
+	 * @param length number of bytes of data to write
+	 * @param out
+	 * @return the number of bytes written
+	 */
+	public static int encode(int index, int archive, byte[] data, int length, ByteBuf out)
+	{
+		int pos = out.writerIndex();
+
 		// archive file header
 		// 1 byte index
 		// 2 byte archive
-		out.writeByte(archiveResponse.getIndex());
-		out.writeShort(archiveResponse.getArchive());
-
-		int pos = out.readableBytes();
+		out.writeByte(index);
+		out.writeShort(archive);
 
 		// next is the compressed data which starts with compression
 		// type and length
-		ByteBuf file = Unpooled.wrappedBuffer(archiveResponse.getData());
 		// - 3 for the header
-		int chunkSize = Math.min(file.readableBytes(), CHUNK_SIZE - 3);
-
-		writeChunk(file.readBytes(chunkSize), out);
+		int chunkSize = Math.min(length, CHUNK_SIZE - 3);
+		out.writeBytes(data, 0, chunkSize);
 
-		while (file.isReadable())
+		for (int offset = chunkSize; offset < length; offset += chunkSize)
 		{
 			out.writeByte(0xff);
 
-			chunkSize = Math.min(file.readableBytes(), CHUNK_SIZE - 1);
-			writeChunk(file.readBytes(chunkSize), out);
+			chunkSize = Math.min(length - offset, CHUNK_SIZE - 1);
+			out.writeBytes(data, offset, chunkSize);
 		}
 
-		int size = out.readableBytes() - pos;
-		logger.debug("Wrote index {} archive {} (size {}) in {} bytes",
-			archiveResponse.getIndex(), archiveResponse.getArchive(),
-			archiveResponse.getData().length, size);
-	}
-
-	private void writeChunk(ByteBuf chunk, ByteBuf out)
-	{
-		try
-		{
-			out.writeBytes(chunk);
-		}
-		finally
-		{
-			chunk.release();
-		}
+		return out.writerIndex() - pos;
 	}
 
 }
@@ -27,6 +27,7 @@ package net.runelite.protocol.update.encoders;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
+import net.runelite.protocol.update.Xor;
 
 public class XorEncoder extends MessageToByteEncoder<ByteBuf>
 {
@@ -51,10 +52,7 @@ public class XorEncoder extends MessageToByteEncoder<ByteBuf>
 			return;
 		}
 
-		while (msg.isReadable())
-		{
-			out.writeByte(msg.readByte() ^ key);
-		}
+		Xor.xor(msg, out, key);
 	}
 
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.protocol.update.server;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.FixedLengthFrameDecoder;
+import io.netty.util.ReferenceCountUtil;
+import net.runelite.protocol.api.handshake.HandshakeResponsePacket;
+import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
+import net.runelite.protocol.api.login.HandshakeResponseType;
+import net.runelite.protocol.update.decoders.ArchiveRequestDecoder;
+import net.runelite.protocol.update.decoders.EncryptionDecoder;
+import net.runelite.protocol.update.decoders.LoggedInDecoder;
+import net.runelite.protocol.update.decoders.LoggedOutDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class UpdateHandshakeHandler extends ChannelInboundHandlerAdapter
+{
+	private static final Logger logger = LoggerFactory.getLogger(UpdateHandshakeHandler.class);
+
+	// every packet sent by the client after the handshake is 4 bytes
+	private static final int PACKET_SIZE = 4;
+
+	private final UpdateServer server;
+
+	UpdateHandshakeHandler(UpdateServer server)
+	{
+		this.server = server;
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+	{
+		if (!(msg instanceof UpdateHandshakePacket))
+		{
+			logger.debug("Unexpected handshake {} from {}", msg, ctx.channel().remoteAddress());
+			ReferenceCountUtil.release(msg);
+			ctx.close();
+			return;
+		}
+
+		UpdateHandshakePacket handshake = (UpdateHandshakePacket) msg;
+		HandshakeResponsePacket response = new HandshakeResponsePacket();
+
+		if (handshake.getRevision() != server.getRevision())
+		{
+			logger.debug("Client {} has revision {}, ours is {}",
+				ctx.channel().remoteAddress(), handshake.getRevision(), server.getRevision());
+
+			response.setResponse(HandshakeResponseType.RESPONSE_OUTDATED);
+			ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+			return;
+		}
+
+		response.setResponse(HandshakeResponseType.RESPONSE_OK);
+		ctx.writeAndFlush(response);
+
+		ChannelPipeline p = ctx.pipeline();
+		p.replace("decoder", "decoder", new FixedLengthFrameDecoder(PACKET_SIZE));
+		p.addAfter("decoder", "archiveRequestDecoder", new ArchiveRequestDecoder());
+		p.addAfter("archiveRequestDecoder", "encryptionDecoder", new EncryptionDecoder());
+		p.addAfter("encryptionDecoder", "loggedInDecoder", new LoggedInDecoder());
+		p.addAfter("loggedInDecoder", "loggedOutDecoder", new LoggedOutDecoder());
+		p.replace("handler", "handler", new UpdateRequestHandler(server));
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+	{
+		logger.debug("Error during handshake with {}", ctx.channel().remoteAddress(), cause);
+		ctx.close();
+	}
+}
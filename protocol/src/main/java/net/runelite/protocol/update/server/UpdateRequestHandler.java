@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.protocol.update.server;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import net.runelite.protocol.api.update.ArchiveRequestPacket;
+import net.runelite.protocol.api.update.EncryptionPacket;
+import net.runelite.protocol.update.encoders.XorEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves archive requests for one connection. Priority requests are served
+ * before any queued normal requests, and responses are only written while
+ * the channel is writable, so a slow client doesn't buffer its whole
+ * download in memory.
+ */
+class UpdateRequestHandler extends ChannelInboundHandlerAdapter
+{
+	private static final Logger logger = LoggerFactory.getLogger(UpdateRequestHandler.class);
+
+	private static final int MAX_QUEUED_REQUESTS = 1024;
+
+	private final UpdateServer server;
+	private final Deque<ArchiveRequestPacket> priorityRequests = new ArrayDeque<>();
+	private final Deque<ArchiveRequestPacket> requests = new ArrayDeque<>();
+	private boolean loading;
+
+	UpdateRequestHandler(UpdateServer server)
+	{
+		this.server = server;
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+	{
+		if (msg instanceof ArchiveRequestPacket)
+		{
+			ArchiveRequestPacket request = (ArchiveRequestPacket) msg;
+
+			if (priorityRequests.size() + requests.size() >= MAX_QUEUED_REQUESTS)
+			{
+				logger.warn("Client {} has too many queued requests", ctx.channel().remoteAddress());
+				ctx.close();
+				return;
+			}
+
+			(request.isPriority() ? priorityRequests : requests).add(request);
+			drain(ctx);
+		}
+		else if (msg instanceof EncryptionPacket)
+		{
+			setKey(ctx, ((EncryptionPacket) msg).getKey());
+		}
+		else
+		{
+			logger.debug("Unknown packet {} from {}", msg, ctx.channel().remoteAddress());
+			ReferenceCountUtil.release(msg);
+		}
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception
+	{
+		drain(ctx);
+		ctx.fireChannelWritabilityChanged();
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+	{
+		logger.debug("Error serving {}", ctx.channel().remoteAddress(), cause);
+		ctx.close();
+	}
+
+	private void setKey(ChannelHandlerContext ctx, byte key)
+	{
+		XorEncoder xorEncoder = ctx.pipeline().get(XorEncoder.class);
+		if (xorEncoder == null)
+		{
+			if (key == 0)
+			{
+				// nothing to do, and this keeps responses from being copied
+				return;
+			}
+
+			xorEncoder = new XorEncoder();
+			ctx.pipeline().addFirst("xorEncoder", xorEncoder);
+		}
+		xorEncoder.setKey(key);
+	}
+
+	private void drain(ChannelHandlerContext ctx)
+	{
+		boolean written = false;
+
+		while (!loading && ctx.channel().isWritable())
+		{
+			ArchiveRequestPacket request = priorityRequests.poll();
+			if (request == null)
+			{
+				request = requests.poll();
+				if (request == null)
+				{
+					break;
+				}
+			}
+
+			int index = request.getIndex();
+			int archive = request.getArchive();
+
+			byte[] response = server.getResponse(index, archive);
+			if (response != null)
+			{
+				ctx.write(Unpooled.wrappedBuffer(response));
+				written = true;
+				continue;
+			}
+
+			if (index == 255)
+			{
+				// the client has no request timeout, so close the connection rather than never responding
+				logger.debug("Client {} requested unknown index {}", ctx.channel().remoteAddress(), archive);
+				ctx.flush();
+				ctx.close();
+				return;
+			}
+
+			// wait for the archive to load before serving any other requests
+			loading = true;
+			server.loadResponse(index, archive).whenComplete((data, ex) -> ctx.executor().execute(() ->
+			{
+				loading = false;
+
+				if (ex != null)
+				{
+					logger.debug("Unable to serve {}/{} to {}", index, archive, ctx.channel().remoteAddress(), ex);
+					ctx.close();
+					return;
+				}
+
+				ctx.writeAndFlush(Unpooled.wrappedBuffer(data));
+				drain(ctx);
+			}));
+		}
+
+		if (written)
+		{
+			ctx.flush();
+		}
+	}
+}
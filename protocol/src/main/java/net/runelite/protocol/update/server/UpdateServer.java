@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.protocol.update.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import net.runelite.cache.util.Crc32;
+import net.runelite.protocol.handshake.HandshakeDecoder;
+import net.runelite.protocol.handshake.HandshakeResponseEncoder;
+import net.runelite.protocol.update.encoders.ArchiveResponseEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An update server which serves the archives of a {@link Store}. The store
+ * must be loaded, and must not be modified while it is being served.
+ * <p>
+ * Responses are encoded once and the encoded bytes are shared by every
+ * connection, so serving an archive which has been requested before does
+ * not copy it.
+ */
+public class UpdateServer implements AutoCloseable
+{
+	private static final Logger logger = LoggerFactory.getLogger(UpdateServer.class);
+
+	private static final long MAX_CACHED_BYTES = 64 * 1024 * 1024;
+
+	private final Store store;
+	private final int revision;
+
+	private final byte[] masterIndex;
+	private final byte[][] referenceTables;
+
+	// encoded responses, keyed by index << 32 | archive
+	private final Cache<Long, byte[]> responses = CacheBuilder.newBuilder()
+		.maximumWeight(MAX_CACHED_BYTES)
+		.weigher((Long key, byte[] response) -> response.length)
+		.build();
+
+	private final EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+	private final EventLoopGroup workerGroup = new NioEventLoopGroup();
+	private final ExecutorService loader = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactoryBuilder()
+		.setNameFormat("update-server-loader-%d")
+		.setDaemon(true)
+		.build());
+	private Channel channel;
+
+	public UpdateServer(Store store, int revision) throws IOException
+	{
+		this.store = store;
+		this.revision = revision;
+
+		List<Index> indexes = store.getIndexes();
+		int count = indexes.stream().mapToInt(Index::getId).max().orElse(-1) + 1;
+
+		// the master index holds the crc and revision of every index, and
+		// the client expects the indexes to be contiguous
+		referenceTables = new byte[count][];
+		ByteBuf master = Unpooled.buffer(count * 8);
+		for (int i = 0; i < count; ++i)
+		{
+			Index index = store.findIndex(i);
+			int crc = 0;
+			int indexRevision = 0;
+
+			if (index != null)
+			{
+				byte[] referenceTable = readReferenceTable(index);
+				int length = containerLength(referenceTable);
+
+				Crc32 crc32 = new Crc32();
+				crc32.update(referenceTable, 0, length);
+				crc = crc32.getHash();
+				indexRevision = index.getRevision();
+
+				referenceTables[i] = encode(255, i, referenceTable);
+			}
+
+			master.writeInt(crc);
+			master.writeInt(indexRevision);
+		}
+
+		Container container = new Container(CompressionType.NONE, -1);
+		container.compress(master.array(), null);
+		masterIndex = encode(255, 255, container.data);
+	}
+
+	private byte[] readReferenceTable(Index index) throws IOException
+	{
+		Storage storage = store.getStorage();
+		if (storage instanceof DiskStorage)
+		{
+			// serve the reference table exactly as it was downloaded
+			return ((DiskStorage) storage).readIndex(index.getId());
+		}
+
+		Container container = new Container(index.getCompression(), -1);
+		container.compress(index.toIndexData().writeIndexData(), null);
+		return container.data;
+	}
+
+	/**
+	 * Start accepting connections
+	 *
+	 * @param port port to listen on, or 0 for any free port
+	 * @return the port being listened on
+	 */
+	public int bind(int port)
+	{
+		ServerBootstrap b = new ServerBootstrap();
+		b.group(bossGroup, workerGroup)
+			.channel(NioServerSocketChannel.class)
+			.option(ChannelOption.SO_BACKLOG, 1024)
+			.childOption(ChannelOption.TCP_NODELAY, true)
+			.childHandler(new ChannelInitializer<SocketChannel>()
+			{
+				@Override
+				public void initChannel(SocketChannel ch)
+				{
+					ChannelPipeline p = ch.pipeline();
+					p.addLast("decoder", new HandshakeDecoder());
+					p.addLast("encoder", new HandshakeResponseEncoder());
+					p.addLast("handler", new UpdateHandshakeHandler(UpdateServer.this));
+				}
+			});
+
+		channel = b.bind(port).syncUninterruptibly().channel();
+
+		int boundPort = ((InetSocketAddress) channel.localAddress()).getPort();
+		logger.info("Update server listening on port {} with revision {}", boundPort, revision);
+		return boundPort;
+	}
+
+	@Override
+	public void close()
+	{
+		if (channel != null)
+		{
+			channel.close().syncUninterruptibly();
+		}
+		bossGroup.shutdownGracefully();
+		workerGroup.shutdownGracefully();
+		loader.shutdown();
+	}
+
+	public int getRevision()
+	{
+		return revision;
+	}
+
+	/**
+	 * @return the encoded response for an archive if it is readily
+	 * available, or null if it must be loaded
+	 */
+	byte[] getResponse(int index, int archive)
+	{
+		if (index == 255)
+		{
+			if (archive == 255)
+			{
+				return masterIndex;
+			}
+			return archive < referenceTables.length ? referenceTables[archive] : null;
+		}
+
+		return responses.getIfPresent(key(index, archive));
+	}
+
+	/**
+	 * Load and encode the response for an archive off of the network threads
+	 */
+	CompletableFuture<byte[]> loadResponse(int index, int archive)
+	{
+		return CompletableFuture.supplyAsync(() ->
+		{
+			try
+			{
+				return responses.get(key(index, archive), () -> loadArchive(index, archive));
+			}
+			catch (ExecutionException ex)
+			{
+				throw new CompletionException(ex.getCause());
+			}
+		}, loader);
+	}
+
+	private byte[] loadArchive(int indexId, int archiveId) throws IOException
+	{
+		Index index = store.findIndex(indexId);
+		Archive archive = index != null ? index.getArchive(archiveId) : null;
+		if (archive == null)
+		{
+			throw new IOException("no such archive " + indexId + "/" + archiveId);
+		}
+
+		byte[] data = store.getStorage().loadArchive(archive);
+		if (data == null)
+		{
+			throw new IOException("archive " + indexId + "/" + archiveId + " has no data");
+		}
+
+		return encode(indexId, archiveId, data);
+	}
+
+	/**
+	 * Encode the response for a container, without any revision appended
+	 * to it by the storage
+	 */
+	private static byte[] encode(int index, int archive, byte[] data)
+	{
+		ByteBuf buf = Unpooled.buffer(data.length + 3 + data.length / 511 + 1);
+		ArchiveResponseEncoder.encode(index, archive, data, containerLength(data), buf);
+		return ByteBufUtil.getBytes(buf);
+	}
+
+	private static int containerLength(byte[] data)
+	{
+		int compression = data[0];
+		int compressedSize = Ints.fromBytes(data[1], data[2], data[3], data[4]);
+		return 1 // compression type
+			+ 4 // compressed size
+			+ compressedSize
+			+ (compression != CompressionType.NONE ? 4 : 0);
+	}
+
+	private static long key(int index, int archive)
+	{
+		return (long) index << 32 | archive;
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.protocol.update.decoders;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.Random;
+import net.runelite.protocol.api.update.ArchiveResponsePacket;
+import net.runelite.protocol.update.encoders.ArchiveResponseEncoder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class ArchiveResponseDecoderTest
+{
+	@Test
+	public void testDecodeSplit()
+	{
+		Random random = new Random(42L);
+		// sizes around the chunk boundaries
+		int[] sizes = {1, 504, 505, 506, 1015, 1016, 1017, 100_000};
+
+		ByteBuf stream = Unpooled.buffer();
+		ArchiveResponsePacket[] packets = new ArchiveResponsePacket[sizes.length];
+		EmbeddedChannel encoder = new EmbeddedChannel(new ArchiveResponseEncoder());
+
+		for (int i = 0; i < sizes.length; ++i)
+		{
+			// compression none, compressed length
+			byte[] data = new byte[sizes[i]];
+			random.nextBytes(data);
+			ByteBuf header = Unpooled.buffer(5 + data.length);
+			header.writeByte(0);
+			header.writeInt(data.length);
+			header.writeBytes(data);
+
+			ArchiveResponsePacket packet = new ArchiveResponsePacket();
+			packet.setIndex(7);
+			packet.setArchive(i);
+			packet.setData(header.array());
+			packets[i] = packet;
+
+			encoder.writeOutbound(packet);
+		}
+
+		ByteBuf encoded;
+		while ((encoded = encoder.readOutbound()) != null)
+		{
+			stream.writeBytes(encoded);
+			encoded.release();
+		}
+
+		EmbeddedChannel channel = new EmbeddedChannel(new ArchiveResponseDecoder());
+
+		// deliver the stream in uneven pieces
+		while (stream.isReadable())
+		{
+			int len = Math.min(stream.readableBytes(), 1 + random.nextInt(700));
+			channel.writeInbound(stream.readRetainedSlice(len));
+		}
+
+		for (ArchiveResponsePacket expected : packets)
+		{
+			ArchiveResponsePacket response = channel.readInbound();
+			assertEquals(expected.getIndex(), response.getIndex());
+			assertEquals(expected.getArchive(), response.getArchive());
+			assertArrayEquals(expected.getData(), response.getData());
+		}
+
+		assertNull(channel.readInbound());
+		stream.release();
+	}
+}
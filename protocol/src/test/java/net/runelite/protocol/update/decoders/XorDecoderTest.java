@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.protocol.update.decoders;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.Random;
+import net.runelite.protocol.update.encoders.XorEncoder;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class XorDecoderTest
+{
+	@Test
+	public void testRoundTrip()
+	{
+		Random random = new Random(42L);
+
+		for (int len = 0; len < 40; ++len)
+		{
+			byte[] data = new byte[len];
+			random.nextBytes(data);
+
+			XorEncoder xorEncoder = new XorEncoder();
+			xorEncoder.setKey((byte) 0xa5);
+			EmbeddedChannel encoder = new EmbeddedChannel(xorEncoder);
+			encoder.writeOutbound(Unpooled.wrappedBuffer(data));
+			ByteBuf encoded = encoder.readOutbound();
+			if (encoded == null)
+			{
+				// nothing is written for empty messages
+				assertEquals(0, len);
+				continue;
+			}
+
+			for (int i = 0; i < len; ++i)
+			{
+				assertEquals((byte) (data[i] ^ 0xa5), encoded.getByte(encoded.readerIndex() + i));
+			}
+
+			XorDecoder xorDecoder = new XorDecoder();
+			xorDecoder.setKey((byte) 0xa5);
+			EmbeddedChannel decoder = new EmbeddedChannel(xorDecoder);
+			decoder.writeInbound(encoded);
+			ByteBuf decoded = decoder.readInbound();
+
+			assertEquals(Unpooled.wrappedBuffer(data), decoded);
+			decoded.release();
+		}
+	}
+
+	@Test
+	public void testDecodeReadOnly()
+	{
+		byte[] data = {1, 2, 3, 4, 5, 6, 7, 8, 9};
+		ByteBuf buf = Unpooled.unmodifiableBuffer(Unpooled.wrappedBuffer(data.clone()));
+
+		XorDecoder xorDecoder = new XorDecoder();
+		xorDecoder.setKey((byte) 0x1);
+		EmbeddedChannel decoder = new EmbeddedChannel(xorDecoder);
+		decoder.writeInbound(buf);
+		ByteBuf decoded = decoder.readInbound();
+
+		assertEquals(Unpooled.wrappedBuffer(new byte[]{0, 3, 2, 5, 4, 7, 6, 9, 8}), decoded);
+		decoded.release();
+	}
+}
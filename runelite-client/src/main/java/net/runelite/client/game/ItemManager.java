@@ -33,6 +33,7 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -58,6 +59,7 @@ import net.runelite.client.callback.ClientThread;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.http.api.item.ItemClient;
 import net.runelite.http.api.item.ItemPrice;
+import net.runelite.http.api.item.ItemPriceDelta;
 import net.runelite.http.api.item.ItemStats;
 
 @Singleton
@@ -86,6 +88,7 @@ public class ItemManager
 
 	private final ItemClient itemClient = new ItemClient();
 	private Map<Integer, ItemPrice> itemPrices = Collections.emptyMap();
+	private String priceVersion;
 	private Map<Integer, ItemStats> itemStats = Collections.emptyMap();
 	private final LoadingCache<ImageKey, AsyncBufferedImage> itemImages;
 	private final LoadingCache<Integer, ItemComposition> itemCompositions;
@@ -205,18 +208,32 @@ public class ItemManager
 	{
 		try
 		{
-			ItemPrice[] prices = itemClient.getPrices();
-			if (prices != null)
+			ItemPriceDelta delta = itemClient.getPriceDelta(priceVersion);
+			if (delta != null)
 			{
-				ImmutableMap.Builder<Integer, ItemPrice> map = ImmutableMap.builderWithExpectedSize(prices.length);
-				for (ItemPrice price : prices)
+				ItemPrice[] prices = delta.getPrices();
+				if (delta.isFull())
 				{
-					map.put(price.getId(), price);
+					ImmutableMap.Builder<Integer, ItemPrice> map = ImmutableMap.builderWithExpectedSize(prices.length);
+					for (ItemPrice price : prices)
+					{
+						map.put(price.getId(), price);
+					}
+					itemPrices = map.build();
+				}
+				else if (prices.length > 0)
+				{
+					Map<Integer, ItemPrice> map = new HashMap<>(itemPrices);
+					for (ItemPrice price : prices)
+					{
+						map.put(price.getId(), price);
+					}
+					itemPrices = ImmutableMap.copyOf(map);
 				}
-				itemPrices = map.build();
-			}
 
-			log.debug("Loaded {} prices", itemPrices.size());
+				priceVersion = delta.getVersion();
+				log.debug("Loaded {} prices, {} changed, version {}", itemPrices.size(), prices.length, priceVersion);
+			}
 		}
 		catch (IOException e)
 		{